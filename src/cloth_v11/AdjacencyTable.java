@@ -0,0 +1,94 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * The one-ring of each triangle: every other triangle sharing a vertex (and
+ * so also those sharing an edge) with it, as a sorted list. Built once from
+ * the triangles' vertices; the topology never changes. Such pairs always
+ * touch, so the broad phases drop them before the narrow phase
+ */
+public class AdjacencyTable {
+
+    // Neighbours of triangle t are 'neighbours[offsets[t]]' up to (not
+    //   including) 'neighbours[offsets[t + 1]]', in increasing order
+    private int[] offsets, neighbours;
+
+    // 'triangleVertices' holds three indices into 'nodes' per triangle
+    public AdjacencyTable(int[] triangleVertices, int nTriangles, int nNodes) {
+        // The triangles around each node
+        int[] nodeOffsets = new int[nNodes + 1];
+        for (int v = 0; v < 3 * nTriangles; v++) {
+            nodeOffsets[triangleVertices[v] / 3 + 1]++;
+        }
+        for (int node = 0; node < nNodes; node++) {
+            nodeOffsets[node + 1] += nodeOffsets[node];
+        }
+        int[] nodeTriangles = new int[3 * nTriangles];
+        int[] nodeFill = Arrays.copyOf(nodeOffsets, nNodes);
+        for (int v = 0; v < 3 * nTriangles; v++) {
+            nodeTriangles[nodeFill[triangleVertices[v] / 3]++] = v / 3;
+        }
+
+        // Each triangle's one-ring is the union of its vertices' triangles
+        offsets = new int[nTriangles + 1];
+        int[] ring = new int[64];
+        int[][] rings = new int[nTriangles][];
+        for (int t = 0; t < nTriangles; t++) {
+            int nRing = 0;
+            for (int v = 3 * t; v < 3 * t + 3; v++) {
+                int node = triangleVertices[v] / 3;
+                for (int k = nodeOffsets[node]; k < nodeOffsets[node + 1]; k++) {
+                    if (nodeTriangles[k] != t) {
+                        if (nRing == ring.length) {
+                            ring = Arrays.copyOf(ring, 2 * nRing);
+                        }
+                        ring[nRing++] = nodeTriangles[k];
+                    }
+                }
+            }
+            Arrays.sort(ring, 0, nRing);
+            int nUnique = 0;
+            for (int k = 0; k < nRing; k++) {
+                if (nUnique == 0 || ring[k] != ring[nUnique - 1]) {
+                    ring[nUnique++] = ring[k];
+                }
+            }
+            rings[t] = Arrays.copyOf(ring, nUnique);
+            offsets[t + 1] = offsets[t] + nUnique;
+        }
+        neighbours = new int[offsets[nTriangles]];
+        for (int t = 0; t < nTriangles; t++) {
+            System.arraycopy(rings[t], 0, neighbours, offsets[t], rings[t].length);
+        }
+    }
+
+    // Returns whether triangles 'a' and 'b' share a vertex
+    public boolean AreAdjacent(int a, int b) {
+        for (int k = offsets[a]; k < offsets[a + 1]; k++) {
+            if (neighbours[k] >= b) {
+                return neighbours[k] == b;
+            }
+        }
+        return false;
+    }
+
+    public int GetNumberOfNeighbours(int triangle) {
+        return offsets[triangle + 1] - offsets[triangle];
+    }
+
+    public int GetNeighbour(int triangle, int k) {
+        return neighbours[offsets[triangle] + k];
+    }
+
+}
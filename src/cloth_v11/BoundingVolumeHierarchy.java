@@ -0,0 +1,360 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Bounding volume hierarchy over the cloth's triangles. The triangles never
+ * change, so the tree is built once (splitting at the median centroid along
+ * the longest axis) and afterwards only refit: every box is recomputed from
+ * the node positions, children before parents, in O(n). Refitting loosens
+ * the tree as the cloth deforms, so the summed surface area of the boxes is
+ * compared with its value just after the last build and the tree is rebuilt
+ * once it has grown past 'rebuildThreshold' times that.
+ *
+ * Tree nodes are stored in arrays, parents before children; boxes are six
+ * floats (min x, y, z then max x, y, z). Each triangle's box may be grown
+ * by a padding on every side, so that triangles within that distance of
+ * each other are reported too
+ */
+public class BoundingVolumeHierarchy {
+
+    private static final int maxLeafSize = 4;
+
+    private int nTriangles;
+    private int[] triangleVertices; // Indices into 'nodes' of the vertices of
+            // each triangle, three per triangle
+    private float[] triangleBounds; // Box of each triangle
+    private float padding; // Added to every side of each triangle's box
+    private float[] triangleCentroids; // Used while building
+
+    private int[] treeOrder; // Triangles, in leaf order
+    private float[] treeBounds;
+    private int[] treeLeft, treeRight; // Children, -1 for leaves
+    private int[] treeStart, treeCount; // Range of 'treeOrder' held
+    private int nTreeNodes;
+
+    private float builtArea; // Summed surface area just after building
+    private float rebuildThreshold;
+    private int rebuildCount;
+
+    private int[] stack; // Pairs of tree nodes still to be traversed
+
+    public BoundingVolumeHierarchy(int[] triangleVertices, int nTriangles) {
+        this.triangleVertices = triangleVertices;
+        this.nTriangles = nTriangles;
+        triangleBounds = new float[6 * nTriangles];
+        triangleCentroids = new float[3 * nTriangles];
+        treeOrder = new int[nTriangles];
+
+        // A binary tree with at most 'nTriangles' leaves
+        int maxTreeNodes = Math.max(2 * nTriangles - 1, 1);
+        treeBounds = new float[6 * maxTreeNodes];
+        treeLeft = new int[maxTreeNodes];
+        treeRight = new int[maxTreeNodes];
+        treeStart = new int[maxTreeNodes];
+        treeCount = new int[maxTreeNodes];
+
+        rebuildThreshold = 2;
+        stack = new int[256];
+    }
+
+    // Rebuilds once the boxes' summed surface area reaches this multiple of
+    //   its value after the last build
+    public void SetRebuildThreshold(float rebuildThreshold) {
+        this.rebuildThreshold = rebuildThreshold;
+    }
+
+    // Grows every triangle's box by 'padding' on each side, from the next
+    //   'Build' or 'Update'
+    public void SetPadding(float padding) {
+        this.padding = padding;
+    }
+
+    public int GetRebuildCount() {
+        return rebuildCount;
+    }
+
+    // Builds the tree from scratch around the given positions
+    public void Build(float[] nodes) {
+        DetermineTriangleBounds(nodes);
+        for (int t = 0; t < nTriangles; t++) {
+            treeOrder[t] = t;
+            for (int k = 0; k < 3; k++) {
+                triangleCentroids[3 * t + k] = 0.5f
+                        * (triangleBounds[6 * t + k] + triangleBounds[6 * t + 3 + k]);
+            }
+        }
+        nTreeNodes = 0;
+        if (nTriangles > 0) {
+            BuildRange(0, nTriangles);
+        }
+        RefitTree();
+        builtArea = SummedArea();
+        rebuildCount++;
+    }
+
+    // Refits the tree to the given positions, rebuilding it instead if it has
+    //   degraded too far. If 'previousNodes' is not null, every box covers
+    //   the triangle's motion from there to 'nodes'
+    public void Update(float[] nodes, float[] previousNodes) {
+        DetermineTriangleBounds(nodes);
+        if (previousNodes != null) {
+            ExtendTriangleBounds(previousNodes);
+        }
+        RefitTree();
+        if (SummedArea() > rebuildThreshold * builtArea) {
+            Build(nodes);
+            if (previousNodes != null) {
+                ExtendTriangleBounds(previousNodes);
+                RefitTree();
+            }
+        }
+    }
+
+    // Fills 'pairs' with every pair of triangles (lower index first) whose
+    //   boxes overlap and which do not share a vertex
+    public void FindSelfCollisions(PairBuffer pairs) {
+        pairs.Clear();
+        if (nTreeNodes == 0) {
+            return;
+        }
+
+        // A pair of equal tree nodes stands for collisions within that node
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int b = stack[--top];
+            int a = stack[--top];
+            if (a == b) {
+                if (treeLeft[a] < 0) {
+                    LeafSelfCollisions(a, pairs);
+                } else {
+                    top = Push(top, treeLeft[a], treeLeft[a]);
+                    top = Push(top, treeRight[a], treeRight[a]);
+                    top = Push(top, treeLeft[a], treeRight[a]);
+                }
+            } else if (BoxesOverlap(treeBounds, a, treeBounds, b)) {
+                if (treeLeft[a] < 0 && treeLeft[b] < 0) {
+                    LeafPairCollisions(a, b, pairs);
+                } else if (treeLeft[b] < 0
+                        || (treeLeft[a] >= 0 && treeCount[a] >= treeCount[b])) {
+                    // Descend the larger node
+                    top = Push(top, treeLeft[a], b);
+                    top = Push(top, treeRight[a], b);
+                } else {
+                    top = Push(top, a, treeLeft[b]);
+                    top = Push(top, a, treeRight[b]);
+                }
+            }
+        }
+    }
+
+    private int Push(int top, int a, int b) {
+        if (top + 2 > stack.length) {
+            int[] newStack = new int[2 * stack.length];
+            System.arraycopy(stack, 0, newStack, 0, top);
+            stack = newStack;
+        }
+        stack[top] = a;
+        stack[top + 1] = b;
+        return top + 2;
+    }
+
+    private void LeafSelfCollisions(int leaf, PairBuffer pairs) {
+        int start = treeStart[leaf], end = start + treeCount[leaf];
+        for (int i = start; i < end; i++) {
+            for (int j = i + 1; j < end; j++) {
+                TestTriangles(treeOrder[i], treeOrder[j], pairs);
+            }
+        }
+    }
+
+    private void LeafPairCollisions(int leafA, int leafB, PairBuffer pairs) {
+        int startA = treeStart[leafA], endA = startA + treeCount[leafA];
+        int startB = treeStart[leafB], endB = startB + treeCount[leafB];
+        for (int i = startA; i < endA; i++) {
+            for (int j = startB; j < endB; j++) {
+                TestTriangles(treeOrder[i], treeOrder[j], pairs);
+            }
+        }
+    }
+
+    private void TestTriangles(int a, int b, PairBuffer pairs) {
+        if (BoxesOverlap(triangleBounds, a, triangleBounds, b)
+                && !ShareVertex(a, b)) {
+            pairs.Add(Math.min(a, b), Math.max(a, b));
+        }
+    }
+
+    // Adjacent triangles always touch, so are never reported
+    private boolean ShareVertex(int a, int b) {
+        for (int i = 3 * a; i < 3 * a + 3; i++) {
+            for (int j = 3 * b; j < 3 * b + 3; j++) {
+                if (triangleVertices[i] == triangleVertices[j]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean BoxesOverlap(float[] boundsA, int a,
+            float[] boundsB, int b) {
+        int i = 6 * a, j = 6 * b;
+        return boundsA[i] <= boundsB[j + 3] && boundsB[j] <= boundsA[i + 3]
+                && boundsA[i + 1] <= boundsB[j + 4] && boundsB[j + 1] <= boundsA[i + 4]
+                && boundsA[i + 2] <= boundsB[j + 5] && boundsB[j + 2] <= boundsA[i + 5];
+    }
+
+    private void DetermineTriangleBounds(float[] nodes) {
+        for (int t = 0; t < nTriangles; t++) {
+            int a = triangleVertices[3 * t];
+            int b = triangleVertices[3 * t + 1];
+            int c = triangleVertices[3 * t + 2];
+            for (int k = 0; k < 3; k++) {
+                triangleBounds[6 * t + k] = Math.min(Math.min(nodes[a + k],
+                        nodes[b + k]), nodes[c + k]) - padding;
+                triangleBounds[6 * t + 3 + k] = Math.max(Math.max(nodes[a + k],
+                        nodes[b + k]), nodes[c + k]) + padding;
+            }
+        }
+    }
+
+    // Grows the triangles' boxes to cover them at the given positions as well
+    private void ExtendTriangleBounds(float[] nodes) {
+        for (int t = 0; t < nTriangles; t++) {
+            int a = triangleVertices[3 * t];
+            int b = triangleVertices[3 * t + 1];
+            int c = triangleVertices[3 * t + 2];
+            for (int k = 0; k < 3; k++) {
+                triangleBounds[6 * t + k] = Math.min(triangleBounds[6 * t + k],
+                        Math.min(Math.min(nodes[a + k], nodes[b + k]), nodes[c + k])
+                        - padding);
+                triangleBounds[6 * t + 3 + k] = Math.max(triangleBounds[6 * t + 3 + k],
+                        Math.max(Math.max(nodes[a + k], nodes[b + k]), nodes[c + k])
+                        + padding);
+            }
+        }
+    }
+
+    // Builds the subtree over 'treeOrder[start]' to 'treeOrder[end - 1]' and
+    //   returns its root
+    private int BuildRange(int start, int end) {
+        int node = nTreeNodes++;
+        treeStart[node] = start;
+        treeCount[node] = end - start;
+        if (end - start <= maxLeafSize) {
+            treeLeft[node] = -1;
+            treeRight[node] = -1;
+            return node;
+        }
+
+        // Split at the median centroid along the longest axis of the centroids
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        for (int i = start; i < end; i++) {
+            int t = treeOrder[i];
+            minX = Math.min(minX, triangleCentroids[3 * t]);
+            minY = Math.min(minY, triangleCentroids[3 * t + 1]);
+            minZ = Math.min(minZ, triangleCentroids[3 * t + 2]);
+            maxX = Math.max(maxX, triangleCentroids[3 * t]);
+            maxY = Math.max(maxY, triangleCentroids[3 * t + 1]);
+            maxZ = Math.max(maxZ, triangleCentroids[3 * t + 2]);
+        }
+        int axis = 0;
+        if (maxY - minY > maxX - minX) {
+            axis = 1;
+        }
+        if (maxZ - minZ > Math.max(maxX - minX, maxY - minY)) {
+            axis = 2;
+        }
+        int middle = (start + end) / 2;
+        SelectByCentroid(start, end - 1, middle, axis);
+
+        treeLeft[node] = BuildRange(start, middle);
+        treeRight[node] = BuildRange(middle, end);
+        return node;
+    }
+
+    // Partially orders 'treeOrder[low..high]' so that the element at 'k' is
+    //   the one a full sort along 'axis' would put there (quickselect)
+    private void SelectByCentroid(int low, int high, int k, int axis) {
+        while (high > low) {
+            float pivot = triangleCentroids[3 * treeOrder[(low + high) >>> 1] + axis];
+            int i = low, j = high;
+            while (i <= j) {
+                while (triangleCentroids[3 * treeOrder[i] + axis] < pivot) {
+                    i++;
+                }
+                while (triangleCentroids[3 * treeOrder[j] + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int temp = treeOrder[i];
+                    treeOrder[i] = treeOrder[j];
+                    treeOrder[j] = temp;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // Parents are stored before their children, so going backwards refits
+    //   every child before its parent
+    private void RefitTree() {
+        for (int node = nTreeNodes - 1; node >= 0; node--) {
+            int n = 6 * node;
+            if (treeLeft[node] < 0) {
+                int first = 6 * treeOrder[treeStart[node]];
+                System.arraycopy(triangleBounds, first, treeBounds, n, 6);
+                for (int i = treeStart[node] + 1; i < treeStart[node] + treeCount[node]; i++) {
+                    int t = 6 * treeOrder[i];
+                    for (int k = 0; k < 3; k++) {
+                        treeBounds[n + k] = Math.min(treeBounds[n + k], triangleBounds[t + k]);
+                        treeBounds[n + 3 + k] = Math.max(treeBounds[n + 3 + k], triangleBounds[t + 3 + k]);
+                    }
+                }
+            } else {
+                int l = 6 * treeLeft[node], r = 6 * treeRight[node];
+                for (int k = 0; k < 3; k++) {
+                    treeBounds[n + k] = Math.min(treeBounds[l + k], treeBounds[r + k]);
+                    treeBounds[n + 3 + k] = Math.max(treeBounds[l + 3 + k], treeBounds[r + 3 + k]);
+                }
+            }
+        }
+    }
+
+    // The summed surface area of the internal nodes' boxes, which grows as
+    //   the tree loosens
+    private float SummedArea() {
+        float area = 0;
+        for (int node = 0; node < nTreeNodes; node++) {
+            if (treeLeft[node] >= 0) {
+                int n = 6 * node;
+                float x = treeBounds[n + 3] - treeBounds[n];
+                float y = treeBounds[n + 4] - treeBounds[n + 1];
+                float z = treeBounds[n + 5] - treeBounds[n + 2];
+                area += x * y + y * z + z * x;
+            }
+        }
+        return area;
+    }
+
+}
@@ -0,0 +1,1540 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Headless physics for the cloth: owns the integration state and steps it
+ * without the scene graph or a display, so it can run in batch jobs and
+ * benchmarks. It still needs the vecmath library (through 'Arit', which uses
+ * 'GMatrix' and 'GVector'), but not the rest of Java3D. 'Cloth' is the
+ * Java3D view over an instance of this class.
+ */
+public class ClothSolver {
+
+    // How velocities are advanced each step
+    public enum Integrator {
+        EXPLICIT, // Forward (symplectic) Euler
+        IMPLICIT, // Backward Euler, see 'ImplicitIntegrator'
+        POSITION_BASED // Constraints rather than forces, see 'PositionBasedSolver'
+    }
+
+    // How candidate pairs of triangles are found for self-collision
+    public enum BroadPhase {
+        SWEEP_AND_PRUNE, // Sorted bounds along x, y and z, see 'DetectCollisions'
+        SPATIAL_HASH, // Uniform grid, see 'SpatialHashBroadPhase'
+        BOUNDING_VOLUME_HIERARCHY // Refit tree, see 'BoundingVolumeHierarchy'
+    }
+
+    // Physicality
+    private float[] nodes; // Positions
+
+    /* Triangle numbering
+     n--n--n--n-..
+     |0/| /| /| ..
+     |/1|/ |/ |/..
+     n--n--n--n-..
+     |2/| /| /| ..
+     */
+    private float[] trianglesXMinBound, // The minimum x bound for each triangle
+            trianglesYMinBound, // The minimum y bound for each triangle
+            trianglesZMinBound, // The minimum z bound for each triangle
+            trianglesXMinBoundSorted, // Sorted versions of the above
+            trianglesYMinBoundSorted,
+            trianglesZMinBoundSorted,
+            trianglesXMaxBound, // The maximum x bound for each triangle
+            trianglesYMaxBound, // The maximum y bound for each triangle
+            trianglesZMaxBound; // The maximum z bound for each triangle
+    private int[] trianglesXMinIndexOrder, // The array of indices relating
+            // to 'trianglesXMinBound' specifying their order.
+            trianglesYMinIndexOrder,
+            trianglesZMinIndexOrder,
+            trianglesXMinIndexPosition, // The array of indices mapping triangle indices to indices in trianglesXMinIndexOrder
+            trianglesYMinIndexPosition,
+            trianglesZMinIndexPosition;
+    private RadixSorter[] radixSorters; // One per axis, for sorting from cold
+    private boolean sortFromCold; // Whether 'SortAxis' ignores the old order
+    private PairBuffer[] sweepChunkPairs; // Candidates found by each chunk of
+            // 'DetectCollisions', merged in chunk order
+    private BroadPhase broadPhase;
+    private SpatialHashBroadPhase spatialHash; // Created when first used
+    private PairBuffer broadPhasePairs; // Candidates from a pairwise broad phase
+    private int[] trianglesVertices; // Indices into 'nodes' of the vertices
+            // of each triangle, three per triangle
+    private AdjacencyTable adjacencyTable; // Triangles sharing a vertex,
+            // which always touch and so are never candidates
+    private BoundingVolumeHierarchy boundingVolumeHierarchy;
+    private boolean boundingBoxesCurrent; // Whether 'UpdateNodes' has already
+            // found this step's boxes
+    private PairCache pairCache; // null unless sweep and prune keeps its
+            // candidates from step to step
+    private float[] trianglesFatBounds; // Boxes grown by 'fatMargin' which
+            // the sorted keys hold while cached: min x, y, z, max x, y, z
+    private float fatMargin, fatExtentX; // Widest fat box along x
+    private int[] trianglesMoved; // Step at which each fat box was last refit
+    private int[] movedTriangles; // Triangles refit this step
+    private int nMovedTriangles;
+    private PairBuffer cachedPairs; // Candidates held by 'pairCache'
+    private ContinuousCollisionDetection continuousCollision; // null unless
+            // collisions are swept over each step
+    private float[] previousNodes; // Positions at the start of the step
+    private ContactSolver contactSolver; // null unless self-collisions are
+            // pushed apart
+    private ContactBuffer contactBuffer;
+    private float boundsPadding; // Added to every side of each triangle's
+            // box: the contact thickness while collisions are responded to,
+            // so that every feature pair within it is a candidate
+    private ContinuousCollisionDetection proximityDetection; // Finds
+            // features within the contact thickness at the end of the step
+    private ColliderSet colliders; // Obstacles, empty unless some are added
+            
+    /* It works like this:
+     * Triangle Index:      0  1  2  3  4  5  6  ...  (i)
+     * XMin (unsorted):     5  2  3  8  9  1  4  ...  (trianglesXminBound)
+     * -------------------------------------------------------------------------
+     * XMin Index Order:    5  1  2  6  0  3  4  ...  (trianglesXMinIndexOrder)
+     * Xmin (sorted):       1  2  3  4  5  8  9  ...  (trianglesXminBoundSorted)
+     * -------------------------------------------------------------------------
+     * XMin Index Position: 4  1  2  5  6  0  3  ...  (trianglesXMinIndexPosition)
+     */
+    private float[] forces,
+            accelerations,
+            velocities;
+    private boolean[] nodesColliding; // Nodes belonging to a triangle found
+            // colliding since the flags were last cleared
+
+    // For redrawing only what has changed: the nodes are split into tiles of
+    //   'tileWidth' columns, and a tile is dirty once its nodes may have
+    //   moved more than 'redrawThreshold' since it was last taken (see
+    //   'TakeDirtyTiles')
+    private static final int tileWidth = 8;
+    private int nTiles;
+    private float redrawThreshold;
+    private float[] tilesDrift; // Furthest a node may have moved since taken
+    private boolean[] tilesDirty;
+    private boolean[] tilesCollided; // Holding a node flagged colliding
+    private Triangle_Pair trianglePair; // Narrow phase, reused for every pair
+    private int nWidth, // # nodes across - 1
+            nDepth, // # nodes deep - 1
+            nNodes, // Number of nodes
+            nData, // 3 * nNodes (nodes coordinates with xyz split)
+            nTriangles; // Number of triangles
+    private float positionX, positionY, positionZ; // Position of first node in the cloth
+
+    // Cloth Properties
+    private float clothMass, nodeMass; // All nodes have equal mass in this version
+    private float internodeStableDistance; // Measurable size between adjacent cloth nodes
+    private float shearStableDistance;
+    private double time; // Simulated seconds stepped so far
+    private float dt, internodeSpringConstant, shearSpringConstant,
+            bendingSpringConstant;
+    private SpringTable springTable; // Spring connectivity, built once
+    private float[] nodesDragCoefficient;
+    private boolean[] nodesPinned; // Nodes held in place by 'FixCorners'
+    private Integrator integrator;
+    private ImplicitIntegrator implicitIntegrator; // Created when first used
+    private PositionBasedSolver positionBasedSolver; // Created when first used
+    private StructureOfArraysKernel structureOfArraysKernel; // null unless
+            // the explicit step should run on separate x, y and z arrays
+    private boolean stateInKernel; // Whether the positions and velocities
+            // are held by 'structureOfArraysKernel' rather than 'nodes' and
+            // 'velocities' (the positions are copied to 'nodes' each step)
+    private static final int structureOfArraysMinNodes = 4096; // Smallest
+            // cloth for which the kernel is used by default
+
+    // Parallelism
+    private static final int forceGrain = 1024; // Fewest springs/nodes per task
+    private static final int sweepGrain = 256; // Observed triangles per chunk
+    private WorkerPool workerPool;
+    private WorkerPool.RangeBody springForcesBody, bendingForcesBody, dragBody,
+            sweepBody, collidersBody, sortBody, driftBody;
+
+    private float initial1X, initial1Y, initial1Z;
+    private float initial2X, initial2Y, initial2Z;
+    private float initial3X, initial3Y, initial3Z;
+    private float initial4X, initial4Y, initial4Z;
+
+    // External Properties
+    private float forceDueToGravity;
+
+    public ClothSolver() {
+        AssignDefaultAttributes();
+
+        InitialiseNodes();
+    }
+
+    public ClothSolver(int nWidth, int nDepth,
+            float positionX, float positionY, float positionZ,
+            float internodeStableDistance, float clothMass, float dt) {
+        this.nWidth = nWidth;
+        this.nDepth = nDepth;
+        nNodes = (nWidth + 1) * (nDepth + 1);
+        nTriangles = (nDepth * 2) * nWidth;
+
+        this.positionX = positionX;
+        this.positionY = positionY;
+        this.positionZ = positionZ;
+        this.internodeStableDistance = internodeStableDistance;
+
+        internodeSpringConstant = 1000f;
+        shearSpringConstant = 20f;
+        bendingSpringConstant = 5f;
+        SetMass(clothMass); // 1kg
+        this.dt = dt;
+
+        forceDueToGravity = -0.8f;
+
+        InitialiseNodes();
+    }
+
+    private void AssignDefaultAttributes() {
+        nWidth = 20;
+        nDepth = 20;
+        nNodes = (nWidth + 1) * (nDepth + 1);
+        nTriangles = (nDepth * 2) * nWidth;
+
+        positionX = -1f;
+        positionY = 0.75f;
+        positionZ = -1f;
+        internodeStableDistance = 0.067f;
+
+        internodeSpringConstant = 1000f;
+        shearSpringConstant = 20f;
+        bendingSpringConstant = 5f;
+        SetMass(0.1f); // 1kg
+        dt = 0.01f;
+
+        forceDueToGravity = -0.8f;
+    }
+
+    private void SetMass(float clothMass) {
+        this.clothMass = clothMass;
+        nodeMass = clothMass / nNodes;
+    }
+
+    // Creates and positions nodes of the cloth
+    private void InitialiseNodes() {
+        nNodes = (nWidth + 1) * (nDepth + 1);
+        nData = 3 * nNodes;
+        nodes = new float[nData];
+        forces = ZeroFloatArray(nData);
+        accelerations = ZeroFloatArray(nData);
+        velocities = ZeroFloatArray(nData);
+
+        CalculateShearStableDistance();
+
+        springTable = new SpringTable(nWidth, nDepth,
+                internodeSpringConstant, internodeStableDistance,
+                shearSpringConstant, shearStableDistance,
+                bendingSpringConstant);
+        InitialiseDrag();
+        InitialisePinned();
+        InitialiseWorkers();
+        integrator = Integrator.EXPLICIT;
+        broadPhase = BroadPhase.SWEEP_AND_PRUNE;
+        // Below this size the scalar kernel is as fast
+        SetStructureOfArrays(nNodes >= structureOfArraysMinNodes);
+
+        for (int x = 0; x < nWidth + 1; x++) {
+            for (int z = 0; z < nDepth + 1; z++) {
+                SetNode(nodes, x, z,
+                        positionX + internodeStableDistance * x,
+                        positionY,
+                        positionZ + internodeStableDistance * z);
+            }
+        }
+
+        initial1X = nodes[0];
+        initial1Y = nodes[1];
+        initial1Z = nodes[2];
+
+        initial2X = nodes[GetNode(nWidth, nDepth)];
+        initial2Y = nodes[GetNode(nWidth, nDepth) + 1];
+        initial2Z = nodes[GetNode(nWidth, nDepth) + 2];
+
+        initial3X = nodes[GetNode(nWidth, 0)];
+        initial3Y = nodes[GetNode(nWidth, 0) + 1];
+        initial3Z = nodes[GetNode(nWidth, 0) + 2];
+
+        initial4X = nodes[GetNode(0, nDepth)];
+        initial4Y = nodes[GetNode(0, nDepth) + 1];
+        initial4Z = nodes[GetNode(0, nDepth) + 2];
+
+        nodesColliding = new boolean[nNodes];
+        nTiles = nWidth / tileWidth + 1;
+        tilesDrift = new float[nTiles];
+        tilesDirty = new boolean[nTiles];
+        Arrays.fill(tilesDirty, true);
+        tilesCollided = new boolean[nTiles];
+        redrawThreshold = 0.001f * internodeStableDistance;
+        trianglePair = new Triangle_Pair();
+        // A tenth of the rest length counts as touching, as for self-contacts
+        colliders = new ColliderSet(0.1f * internodeStableDistance);
+
+        InitialiseBoundingBoxes();
+    }
+    
+    private void InitialiseBoundingBoxes() {
+        PrepareBoundingBoxes();
+        DetermineBoundingBoxes();
+        OrderInAllDirections();
+
+        // The triangles never change, so the hierarchy is only ever refit
+        //   (or occasionally rebuilt) from here on
+        trianglesVertices = new int[3 * nTriangles];
+        for (int t = 0; t < nTriangles; t++) {
+            trianglesVertices[3 * t] = GetIndexOfFirstNodeInTriangle(t);
+            trianglesVertices[3 * t + 1] = GetIndexOfSecondNodeInTriangle(t);
+            trianglesVertices[3 * t + 2] = GetIndexOfThirdNodeInTriangle(t);
+        }
+        adjacencyTable = new AdjacencyTable(trianglesVertices, nTriangles,
+                nNodes);
+        boundingVolumeHierarchy = new BoundingVolumeHierarchy(trianglesVertices,
+                nTriangles);
+        boundingVolumeHierarchy.Build(nodes);
+    }
+
+    // Shifts the position of node x-z by the given amount
+    public void CreatePurturbation(int x, int z,
+            float xDistortion, float yDistortion, float zDistortion) {
+        SetNode(nodes, x, z,
+                nodes[GetNode(x, z)] + xDistortion,
+                nodes[GetNode(x, z) + 1] + yDistortion,
+                nodes[GetNode(x, z) + 2] + zDistortion);
+        tilesDirty[x / tileWidth] = true;
+        if (stateInKernel) {
+            structureOfArraysKernel.SetPosition(GetNode(x, z) / 3,
+                    nodes[GetNode(x, z)], nodes[GetNode(x, z) + 1],
+                    nodes[GetNode(x, z) + 2]);
+        }
+    }
+
+    // All nodes other than the four corners are subject to drag
+    private void InitialiseDrag() {
+        nodesDragCoefficient = ZeroFloatArray(nNodes);
+        Arit.FillWithValue(nodesDragCoefficient, 10);
+        nodesDragCoefficient[GetNode(0, 0) / 3] = 0;
+        nodesDragCoefficient[GetNode(nWidth, 0) / 3] = 0;
+        nodesDragCoefficient[GetNode(0, nDepth) / 3] = 0;
+        nodesDragCoefficient[GetNode(nWidth, nDepth) / 3] = 0;
+    }
+
+    // The corners restored by 'FixCorners'
+    private void InitialisePinned() {
+        nodesPinned = new boolean[nNodes];
+        nodesPinned[GetNode(nWidth, nDepth) / 3] = true;
+        nodesPinned[GetNode(nWidth, 0) / 3] = true;
+        nodesPinned[GetNode(0, nDepth) / 3] = true;
+    }
+
+    // Creates the (reused) pieces of work run by 'workerPool'. Defaults to
+    //   a single thread
+    private void InitialiseWorkers() {
+        workerPool = new WorkerPool(1);
+
+        springForcesBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                springTable.ApplySpringForces(nodes, forces, start, end);
+            }
+        };
+        bendingForcesBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                springTable.ApplyBendingForces(nodes, forces, start, end);
+            }
+        };
+        dragBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                ApplyDrag(start, end);
+            }
+        };
+        sweepBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                SweepChunks(start, end);
+            }
+        };
+        sortBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                for (int axis = start; axis < end; axis++) {
+                    SortAxis(axis);
+                }
+            }
+        };
+        driftBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                for (int tile = start; tile < end; tile++) {
+                    AccumulateDrift(tile);
+                }
+            }
+        };
+        collidersBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                colliders.Resolve(nodes, velocities, nodesPinned, start, end);
+            }
+        };
+    }
+
+    // Sets the number of threads used to evaluate forces. Results are
+    //   identical for any thread count
+    public void SetThreadCount(int nThreads) {
+        if (nThreads != workerPool.GetThreadCount()) {
+            workerPool.Shutdown();
+            workerPool = new WorkerPool(nThreads);
+            if (implicitIntegrator != null) {
+                implicitIntegrator.SetWorkerPool(workerPool);
+            }
+            if (positionBasedSolver != null) {
+                positionBasedSolver.SetWorkerPool(workerPool);
+            }
+            if (contactSolver != null) {
+                contactSolver.SetWorkerPool(workerPool);
+            }
+            if (structureOfArraysKernel != null) {
+                structureOfArraysKernel.SetWorkerPool(workerPool);
+            }
+        }
+    }
+
+    public int GetThreadCount() {
+        return workerPool.GetThreadCount();
+    }
+
+    // Returns the pool the solver's parallel work runs on, for work done on
+    //   its state between steps. It is replaced by 'SetThreadCount'
+    public WorkerPool GetWorkerPool() {
+        return workerPool;
+    }
+
+    public void SetIntegrator(Integrator integrator) {
+        this.integrator = integrator;
+        if (integrator == Integrator.IMPLICIT && implicitIntegrator == null) {
+            implicitIntegrator = new ImplicitIntegrator(springTable, nNodes,
+                    nodesDragCoefficient, nodesPinned);
+            implicitIntegrator.SetWorkerPool(workerPool);
+        }
+        if (integrator == Integrator.POSITION_BASED && positionBasedSolver == null) {
+            positionBasedSolver = new PositionBasedSolver(springTable, nNodes,
+                    nodesDragCoefficient, nodesPinned);
+            positionBasedSolver.SetWorkerPool(workerPool);
+        }
+    }
+
+    public Integrator GetIntegrator() {
+        return integrator;
+    }
+
+    // Selects (at run time) whether the explicit integrator uses the
+    //   structure-of-arrays kernel or the scalar one over interleaved nodes.
+    //   On by default for cloths of 'structureOfArraysMinNodes' nodes or
+    //   more. Steps which need the interleaved velocities mid-step (see
+    //   'UsesStructureOfArrays') fall back to the scalar kernel
+    public void SetStructureOfArrays(boolean structureOfArrays) {
+        if (!structureOfArrays) {
+            if (structureOfArraysKernel != null) {
+                MoveStateToKernel(false);
+            }
+            structureOfArraysKernel = null;
+        } else if (structureOfArraysKernel == null) {
+            structureOfArraysKernel = new StructureOfArraysKernel(nWidth, nDepth,
+                    internodeSpringConstant, internodeStableDistance,
+                    shearSpringConstant, shearStableDistance,
+                    bendingSpringConstant, nodesDragCoefficient, nodesPinned);
+            structureOfArraysKernel.SetWorkerPool(workerPool);
+        }
+    }
+
+    public boolean IsStructureOfArrays() {
+        return structureOfArraysKernel != null;
+    }
+
+    // Whether the next step runs on the structure-of-arrays kernel: it must
+    //   be selected, the integrator explicit, and nothing else in the step
+    //   may need the velocities (obstacles and the collision response do)
+    private boolean UsesStructureOfArrays() {
+        return structureOfArraysKernel != null
+                && integrator == Integrator.EXPLICIT
+                && colliders.IsEmpty() && contactSolver == null;
+    }
+
+    // Hands the positions and velocities to the kernel or takes them back,
+    //   if they are not already where 'toKernel' says
+    private void MoveStateToKernel(boolean toKernel) {
+        if (toKernel && !stateInKernel) {
+            structureOfArraysKernel.Load(nodes, velocities);
+        } else if (!toKernel && stateInKernel) {
+            // The positions are already in 'nodes'
+            structureOfArraysKernel.StoreVelocities(velocities);
+        }
+        stateInKernel = toKernel;
+    }
+
+    // Selects (at run time) how candidate pairs for self-collision are found
+    public void SetBroadPhase(BroadPhase broadPhase) {
+        if (broadPhase == BroadPhase.SPATIAL_HASH && spatialHash == null) {
+            // Cells two rest lengths across hold any unstretched triangle in
+            //   at most two cells along each axis
+            spatialHash = new SpatialHashBroadPhase(nTriangles,
+                    2 * internodeStableDistance);
+            spatialHash.SetExclusions(adjacencyTable);
+        }
+        if (broadPhase == BroadPhase.SWEEP_AND_PRUNE
+                && this.broadPhase != BroadPhase.SWEEP_AND_PRUNE) {
+            // The sorted bounds went stale while unused; sort them afresh
+            DetermineBoundingBoxes();
+            OrderInAllDirections();
+            if (pairCache != null) {
+                InvalidateFatBoundingBoxes();
+            }
+        }
+        if (broadPhase == BroadPhase.BOUNDING_VOLUME_HIERARCHY
+                && this.broadPhase != BroadPhase.BOUNDING_VOLUME_HIERARCHY) {
+            // Likewise the hierarchy, which was not refit while unused
+            boundingVolumeHierarchy.Build(nodes);
+        }
+        this.broadPhase = broadPhase;
+    }
+
+    public BroadPhase GetBroadPhase() {
+        return broadPhase;
+    }
+
+    // Selects (at run time) whether sweep and prune keeps its candidate
+    //   pairs from step to step, finding them again only for triangles
+    //   which have moved out of their fat boxes
+    public void SetPairCache(boolean cache) {
+        if (!cache) {
+            // The next step puts the exact minimums back in the sorted keys
+            pairCache = null;
+        } else if (pairCache == null) {
+            pairCache = new PairCache(4 * nTriangles);
+            trianglesFatBounds = new float[6 * nTriangles];
+            trianglesMoved = new int[nTriangles];
+            movedTriangles = new int[nTriangles];
+            cachedPairs = new PairBuffer(nTriangles);
+            // Small next to a triangle, but more than a draping cloth moves
+            //   in most steps
+            fatMargin = 0.2f * internodeStableDistance;
+            InvalidateFatBoundingBoxes();
+        }
+    }
+
+    public boolean IsPairCache() {
+        return pairCache != null;
+    }
+
+    // Returns the pair cache (to set how long stale pairs are kept), or null
+    //   if candidates are not cached
+    public PairCache GetPairCache() {
+        return pairCache;
+    }
+
+    // Selects (at run time) whether self-collisions are also swept over each
+    //   step, finding when (not just whether) triangles meet
+    public void SetContinuousCollision(boolean continuous) {
+        if (!continuous) {
+            continuousCollision = null;
+        } else if (continuousCollision == null) {
+            previousNodes = new float[nData];
+            System.arraycopy(nodes, 0, previousNodes, 0, nData);
+            // A tenth of the rest length counts as touching
+            continuousCollision = new ContinuousCollisionDetection(
+                    trianglesVertices, 0.1f * internodeStableDistance);
+            if (contactSolver != null) {
+                continuousCollision.SetContactBuffer(contactBuffer);
+            }
+        }
+    }
+
+    // Selects (at run time) whether self-collisions found at the end of each
+    //   step (and, if continuous, during it) are pushed apart
+    public void SetCollisionResponse(boolean response) {
+        if (!response) {
+            contactSolver = null;
+        } else if (contactSolver == null) {
+            float thickness = 0.1f * internodeStableDistance;
+            contactBuffer = new ContactBuffer();
+            proximityDetection = new ContinuousCollisionDetection(
+                    trianglesVertices, thickness);
+            proximityDetection.SetContactBuffer(contactBuffer);
+            contactSolver = new ContactSolver(nodesPinned, thickness);
+            contactSolver.SetWorkerPool(workerPool);
+        }
+        boundsPadding = response ? proximityDetection.GetThickness() : 0;
+        boundingVolumeHierarchy.SetPadding(boundsPadding);
+        if (continuousCollision != null) {
+            continuousCollision.SetContactBuffer(response ? contactBuffer : null);
+        }
+    }
+
+    public boolean IsCollisionResponse() {
+        return contactSolver != null;
+    }
+
+    // Returns the contact solver (to set its friction and iteration count),
+    //   or null if there is no collision response
+    public ContactSolver GetContactSolver() {
+        return contactSolver;
+    }
+
+    // Returns the contacts found in the last step, or null if there is no
+    //   collision response
+    ContactBuffer GetContactBuffer() {
+        return contactSolver != null ? contactBuffer : null;
+    }
+
+    public boolean IsContinuousCollision() {
+        return continuousCollision != null;
+    }
+
+    // Returns the impacts found in the last step (with their times), or null
+    //   if collisions are not continuous
+    public ContinuousCollisionDetection GetContinuousCollision() {
+        return continuousCollision;
+    }
+
+    // Returns the hierarchy used by the 'BOUNDING_VOLUME_HIERARCHY' broad
+    //   phase (to set when it is rebuilt)
+    public BoundingVolumeHierarchy GetBoundingVolumeHierarchy() {
+        return boundingVolumeHierarchy;
+    }
+
+    // Returns the implicit integrator (to adjust its solver), or null if the
+    //   implicit integrator has never been selected
+    public ImplicitIntegrator GetImplicitIntegrator() {
+        return implicitIntegrator;
+    }
+
+    // Returns the position based solver (to set its iteration count), or null
+    //   if it has never been selected
+    public PositionBasedSolver GetPositionBasedSolver() {
+        return positionBasedSolver;
+    }
+
+    // This is the hypotenuse of the right-angled triangle with base and height
+    // both equal to internodeStableDistance
+    private void CalculateShearStableDistance() {
+        shearStableDistance = (float) Math.sqrt(2) * internodeStableDistance;
+    }
+
+    // Advances the simulation by 'n' time steps of 'dt'
+    public void Step(int n) {
+        for (int count = 0; count < n; count++) {
+            time += dt;
+            boolean structureOfArrays = UsesStructureOfArrays();
+            MoveStateToKernel(structureOfArrays);
+            if (continuousCollision != null) {
+                System.arraycopy(nodes, 0, previousNodes, 0, nData);
+            }
+
+            if (integrator == Integrator.POSITION_BASED) {
+                // Positions are solved directly; no forces are needed
+                positionBasedSolver.Step(nodes, velocities, dt,
+                        forceDueToGravity);
+                FinishStep();
+                continue;
+            }
+
+            if (structureOfArrays) {
+                StepStructureOfArrays();
+                continue;
+            }
+
+            ResolveForces();
+
+            if (integrator == Integrator.IMPLICIT) {
+                implicitIntegrator.UpdateVelocities(nodes, velocities,
+                        forces, dt);
+            } else {
+                UpdateVelocities();
+            }
+
+            UpdateNodes();
+        }
+    }
+
+    // An explicit step on the structure-of-arrays kernel, which holds the
+    //   state and leaves the new positions in 'nodes'
+    private void StepStructureOfArrays() {
+        structureOfArraysKernel.Step(forceDueToGravity, dt, nodes);
+        boundingBoxesCurrent = false;
+
+        FinishStep();
+    }
+
+    private void ResolveForces() {
+        ApplyInternodeForces();
+
+        ApplyDampingForces();
+    }
+
+    private void ApplyInternodeForces() {
+        FillWithThreeValues(forces, 0, forceDueToGravity, 0);
+
+        // One colour class at a time: within a class no two springs share a
+        //   node, so its springs can accumulate concurrently without locks
+        for (int colour = 0; colour < springTable.GetNumberOfSpringColours(); colour++) {
+            workerPool.ForEachChunk(springTable.springsColourOffsets[colour],
+                    springTable.springsColourOffsets[colour + 1],
+                    forceGrain, springForcesBody);
+        }
+
+        for (int colour = 0; colour < springTable.GetNumberOfBendingColours(); colour++) {
+            workerPool.ForEachChunk(springTable.bendingColourOffsets[colour],
+                    springTable.bendingColourOffsets[colour + 1],
+                    forceGrain, bendingForcesBody);
+        }
+
+        workerPool.ForEachChunk(0, nNodes, forceGrain, dragBody);
+    }
+
+    private void ApplyDampingForces() {
+        // TODO
+    }
+
+    // Applies velocity drag to nodes 'start' to 'end - 1' (corner nodes have
+    //   a zero drag coefficient)
+    private void ApplyDrag(int start, int end) {
+        for (int node = start; node < end; node++) {
+            int nodeThis = 3 * node;
+            float drag = nodesDragCoefficient[node];
+            forces[nodeThis] -= drag * velocities[nodeThis];
+            forces[nodeThis + 1] -= drag * velocities[nodeThis + 1];
+            forces[nodeThis + 2] -= drag * velocities[nodeThis + 2];
+        }
+    }
+
+    private void UpdateVelocities() {
+        for (int x = 0; x < nWidth + 1; x++) {
+            for (int z = 0; z < nDepth + 1; z++) {
+                velocities[GetNode(x, z)] += forces[GetNode(x, z)] * dt;
+                velocities[GetNode(x, z) + 1] += forces[GetNode(x, z) + 1] * dt;
+                velocities[GetNode(x, z) + 2] += forces[GetNode(x, z) + 2] * dt;
+            }
+        }
+    }
+
+    // Position update, fused with finding the triangles' bounding boxes:
+    //   once column x of nodes has moved, the strip of triangles between
+    //   columns x - 1 and x is complete, so its boxes are found while those
+    //   nodes are still in cache rather than in a second pass over 'nodes'.
+    //   The boxes would be stale if the obstacles moved nodes afterwards, and
+    //   the hierarchy keeps boxes of its own, so neither of those fuse
+    private void UpdateNodes() {
+        boolean fused = broadPhase != BroadPhase.BOUNDING_VOLUME_HIERARCHY
+                && colliders.IsEmpty();
+        for (int x = 0; x < nWidth + 1; x++) {
+            for (int z = 0; z < nDepth + 1; z++) {
+                nodes[GetNode(x, z)] += velocities[GetNode(x, z)] * dt;
+                nodes[GetNode(x, z) + 1] += velocities[GetNode(x, z) + 1] * dt;
+                nodes[GetNode(x, z) + 2] += velocities[GetNode(x, z) + 2] * dt;
+            }
+            if (fused) {
+                if (x == 0 || x == nWidth) {
+                    // The column holds a corner, which must be back in place
+                    //   before its triangles are bounded
+                    FixCorners();
+                }
+                if (x > 0) {
+                    DetermineStripBoundingBoxes(x - 1);
+                }
+            }
+        }
+        boundingBoxesCurrent = fused;
+
+        FinishStep();
+    }
+
+    // Work done once the nodes have their new positions
+    private void FinishStep() {
+        FixCorners();
+
+        CollisionDetect();
+
+        ProcessBoundingBoxes();
+        if (contactSolver != null) {
+            contactSolver.Resolve(contactBuffer, nodes, velocities, dt);
+        }
+
+        workerPool.ForEachChunk(0, nTiles, 1, driftBody);
+    }
+
+    // Adds to the tile's drift the furthest any of its free nodes moved this
+    //   step (taken from the velocities every integrator leaves behind), and
+    //   marks it dirty once that passes the redraw threshold
+    private void AccumulateDrift(int tile) {
+        int start = tile * tileWidth * (nDepth + 1);
+        int end = Math.min((tile + 1) * tileWidth, nWidth + 1) * (nDepth + 1);
+        float speed2 = stateInKernel
+                ? structureOfArraysKernel.GetMaxSpeedSquared(start, end)
+                : GetMaxSpeedSquared(start, end);
+        tilesDrift[tile] += (float) Math.sqrt(speed2) * dt;
+        if (!(tilesDrift[tile] <= redrawThreshold)) {
+            tilesDirty[tile] = true;
+        }
+    }
+
+    // Returns the greatest squared speed of the free nodes 'start' to
+    //   'end - 1' (NaN if any is NaN)
+    private float GetMaxSpeedSquared(int start, int end) {
+        float speed2 = 0;
+        for (int node = start; node < end; node++) {
+            if (!nodesPinned[node]) {
+                float vx = velocities[3 * node];
+                float vy = velocities[3 * node + 1];
+                float vz = velocities[3 * node + 2];
+                // Math.max keeps a NaN, which must count as moved
+                speed2 = Math.max(speed2, vx * vx + vy * vy + vz * vz);
+            }
+        }
+        return speed2;
+    }
+
+    private void FixCorners() {
+        /*nodes[0] = initial1X;
+        nodes[1] = initial1Y;
+        nodes[2] = initial1Z;*/
+
+        nodes[GetNode(nWidth, nDepth)] = initial2X;
+        nodes[GetNode(nWidth, nDepth) + 1] = initial2Y;
+        nodes[GetNode(nWidth, nDepth) + 2] = initial2Z;
+        
+         nodes[GetNode(nWidth, 0)] = initial3X;
+         nodes[GetNode(nWidth, 0) + 1] = initial3Y;
+         nodes[GetNode(nWidth, 0) + 2] = initial3Z;
+
+        nodes[GetNode(0, nDepth)] = initial4X;
+        nodes[GetNode(0, nDepth) + 1] = initial4Y;
+        nodes[GetNode(0, nDepth) + 2] = initial4Z;
+    }
+
+    // Pushes the nodes out of the obstacles in 'colliders'
+    private void CollisionDetect() {
+        if (!colliders.IsEmpty()) {
+            workerPool.ForEachChunk(0, nNodes, forceGrain, collidersBody);
+        }
+    }
+
+    // Returns the obstacles the cloth collides with, to add shapes to
+    public ColliderSet GetColliders() {
+        return colliders;
+    }
+
+    public float[] GetNodes() {
+        return nodes;
+    }
+
+    // While the structure-of-arrays kernel holds the state, the velocities
+    //   are copied out of it on each call
+    public float[] GetVelocities() {
+        if (stateInKernel) {
+            structureOfArraysKernel.StoreVelocities(velocities);
+        }
+        return velocities;
+    }
+
+    // Not kept up to date by the structure-of-arrays kernel
+    public float[] GetForces() {
+        return forces;
+    }
+
+    public int GetWidth() {
+        return nWidth;
+    }
+
+    public int GetDepth() {
+        return nDepth;
+    }
+
+    public int GetNumberOfNodes() {
+        return nNodes;
+    }
+
+    public int GetNumberOfTriangles() {
+        return nTriangles;
+    }
+
+    // Returns the candidate pairs the broad phase found at the last step
+    PairBuffer GetCandidatePairs() {
+        return broadPhasePairs;
+    }
+
+    // Returns the indices into 'nodes' of the vertices of each triangle,
+    //   three per triangle
+    int[] GetTrianglesVertices() {
+        return trianglesVertices;
+    }
+
+    // Returns the simulated time of the current state
+    public double GetTime() {
+        return time;
+    }
+
+    public float GetTimeStep() {
+        return dt;
+    }
+
+    // The implicit integrator stays stable at much larger time steps than
+    //   the explicit one
+    public void SetTimeStep(float dt) {
+        this.dt = dt;
+    }
+
+    // Returns whether the node (index in 'nodes' divided by 3) has been part of
+    //   a colliding triangle since the flags were last cleared
+    public boolean IsNodeColliding(int nodeIndex) {
+        return nodesColliding[nodeIndex];
+    }
+
+    // Clears the flags, looking only in the tiles holding one
+    public void ClearCollisionFlags() {
+        for (int tile = 0; tile < nTiles; tile++) {
+            if (tilesCollided[tile]) {
+                int start = tile * tileWidth * (nDepth + 1);
+                int end = Math.min((tile + 1) * tileWidth, nWidth + 1) * (nDepth + 1);
+                Arrays.fill(nodesColliding, start, end, false);
+                tilesCollided[tile] = false;
+            }
+        }
+    }
+
+    // Returns the number of columns of nodes per tile (the last tile may
+    //   have fewer)
+    public int GetTileWidth() {
+        return tileWidth;
+    }
+
+    public int GetNumberOfTiles() {
+        return nTiles;
+    }
+
+    // Sets how far a tile's nodes may move before it is dirty
+    public void SetRedrawThreshold(float redrawThreshold) {
+        this.redrawThreshold = redrawThreshold;
+    }
+
+    public float GetRedrawThreshold() {
+        return redrawThreshold;
+    }
+
+    // Fills 'dirty' with whether each tile has moved more than the redraw
+    //   threshold, or holds a node flagged colliding, since it was last
+    //   taken, and starts the moved tiles afresh
+    public void TakeDirtyTiles(boolean[] dirty) {
+        for (int tile = 0; tile < nTiles; tile++) {
+            dirty[tile] = tilesDirty[tile] || tilesCollided[tile];
+            if (tilesDirty[tile]) {
+                tilesDirty[tile] = false;
+                tilesDrift[tile] = 0;
+            }
+        }
+    }
+
+    // Helper methods //
+    public static float[] ZeroFloatArray(int size) {
+        float[] array = new float[size];
+        for (int count = 0; count < array.length; count++) {
+            array[count] = 0f;
+        }
+        return array;
+    }
+    
+    // Fills the given array with values x, y, z in groups of three
+    public static void FillWithThreeValues(float[] array,
+            float x, float y, float z) {
+        for (int count = 0; count < array.length; count += 3) {
+            array[count] = x;
+            array[count + 1] = y;
+            array[count + 2] = z;
+        }
+    }
+
+    // Returns the index of the 'nodes' array of the x-zth node
+    // Note that the 'nodes' array contains individual xyz coordinates
+    // for each node (so has 3 * nNodes elements)
+    // The data of nodes[GetNode(x, z)] is the x coordinate of node x-z
+    // ____________nodes[GetNode(x, z)+1] is the y coordinate of node x-z
+    // ____________nodes[GetNode(x, z)+2] is the z coordinate of node x-z
+    private int GetNode(int x, int z) {
+        return 3 * (x * (nDepth + 1) + z);
+    }
+
+    // Sets three successive pieces of array data to the given data in sequance
+    private void SetNode(float[] data, int x, int y,
+            float data0, float data1, float data2) {
+        data[GetNode(x, y)] = data0;
+        data[GetNode(x, y) + 1] = data1;
+        data[GetNode(x, y) + 2] = data2;
+    }
+
+    // Bounding box definition
+    // Nodes and traingles are indexed thus:
+    /*
+     00---D+1--
+     ||00/|2*D/
+     || / || /   1
+     ||/01||/2*D+1
+     01---D+2--
+     ||02/||2*D+2
+     || / || /   2
+     ||/03||/2*D+3
+     02---D+3--
+     Where D = nDepth (= 2 in this case
+     */
+    // The index of the first node in the 'triangleIndex'th triangle
+    // is preciesly equal to 'triangleIndex' eg.
+    // |/4|/...
+    // 5--6--n..
+    // |5/| /|..
+    // |/6|/ |..
+    // 7--8--n..
+    // The sixth triangle is made from nodes 6, 7, 8 and six = 6!
+    // For all columns other than the first
+    
+    private void ProcessBoundingBoxes() {
+        if (broadPhase == BroadPhase.BOUNDING_VOLUME_HIERARCHY) {
+            // The hierarchy keeps its own boxes
+            boundingVolumeHierarchy.Update(nodes,
+                    continuousCollision != null ? previousNodes : null);
+            boundingVolumeHierarchy.FindSelfCollisions(broadPhasePairs);
+            DetectCollisions(broadPhasePairs);
+            return;
+        }
+
+        if (!boundingBoxesCurrent) {
+            DetermineBoundingBoxes();
+        }
+        boundingBoxesCurrent = false;
+        if (broadPhase == BroadPhase.SPATIAL_HASH) {
+            spatialHash.FindPairs(nTriangles,
+                    trianglesXMinBound, trianglesYMinBound, trianglesZMinBound,
+                    trianglesXMaxBound, trianglesYMaxBound, trianglesZMaxBound,
+                    broadPhasePairs);
+            DetectCollisions(broadPhasePairs);
+        } else if (pairCache != null) {
+            RefreshFatBoundingBoxes();
+            ReorderInAllDirections();
+            DetectCachedCollisions();
+        } else {
+            ReorderInAllDirections();
+            DetectCollisions();
+        }
+    }
+    
+    
+    private void DetermineBoundingBoxes() {
+        // The index of the first, second and third triangles in the
+        //   considered triangle
+        int XIndexOfFirstTriangle,
+                XIndexOfSecondTriangle,
+                XIndexOfThirdTriangle;
+        for (int i = 0; i < nTriangles; i++) {
+            // Consider triangles minimums in the order that they appear in 
+            //   their corresponding index order array
+            int triangleIndex = trianglesXMinIndexOrder[i];
+            XIndexOfFirstTriangle = GetIndexOfFirstNodeInTriangle(triangleIndex);
+            XIndexOfSecondTriangle = GetIndexOfSecondNodeInTriangle(triangleIndex);
+            XIndexOfThirdTriangle = GetIndexOfThirdNodeInTriangle(triangleIndex);
+            trianglesXMinBoundSorted[i]
+                    = SweptMinOfThree(XIndexOfFirstTriangle,
+                            XIndexOfSecondTriangle, XIndexOfThirdTriangle, 0);
+            trianglesXMinBound[triangleIndex] = trianglesXMinBoundSorted[i];
+            trianglesXMinIndexPosition[triangleIndex] = i;
+            
+            triangleIndex = trianglesYMinIndexOrder[i];
+            XIndexOfFirstTriangle = GetIndexOfFirstNodeInTriangle(triangleIndex);
+            XIndexOfSecondTriangle = GetIndexOfSecondNodeInTriangle(triangleIndex);
+            XIndexOfThirdTriangle = GetIndexOfThirdNodeInTriangle(triangleIndex);
+            trianglesYMinBoundSorted[i]
+                    = SweptMinOfThree(XIndexOfFirstTriangle,
+                            XIndexOfSecondTriangle, XIndexOfThirdTriangle, 1);
+            trianglesYMinBound[triangleIndex] = trianglesYMinBoundSorted[i];
+            trianglesYMinIndexPosition[triangleIndex] = i;
+            
+            triangleIndex = trianglesZMinIndexOrder[i];
+            XIndexOfFirstTriangle = GetIndexOfFirstNodeInTriangle(triangleIndex);
+            XIndexOfSecondTriangle = GetIndexOfSecondNodeInTriangle(triangleIndex);
+            XIndexOfThirdTriangle = GetIndexOfThirdNodeInTriangle(triangleIndex);
+            trianglesZMinBoundSorted[i]
+                    = SweptMinOfThree(XIndexOfFirstTriangle,
+                            XIndexOfSecondTriangle, XIndexOfThirdTriangle, 2);
+            trianglesZMinBound[triangleIndex] = trianglesZMinBoundSorted[i];
+            trianglesZMinIndexPosition[triangleIndex] = i;
+            
+            // For max bounds, triangles are never ordered so their indix ordering
+            //   is an ascending array, coincidentally corresponding with the
+            //   incremental increasing local variable, 'i'.
+            triangleIndex = i;
+            XIndexOfFirstTriangle = GetIndexOfFirstNodeInTriangle(triangleIndex);
+            XIndexOfSecondTriangle = GetIndexOfSecondNodeInTriangle(triangleIndex);
+            XIndexOfThirdTriangle = GetIndexOfThirdNodeInTriangle(triangleIndex);
+            trianglesXMaxBound[i]
+                    = SweptMaxOfThree(XIndexOfFirstTriangle,
+                            XIndexOfSecondTriangle, XIndexOfThirdTriangle, 0);
+            trianglesYMaxBound[i]
+                    = SweptMaxOfThree(XIndexOfFirstTriangle,
+                            XIndexOfSecondTriangle, XIndexOfThirdTriangle, 1);
+            trianglesZMaxBound[i]
+                    = SweptMaxOfThree(XIndexOfFirstTriangle,
+                            XIndexOfSecondTriangle, XIndexOfThirdTriangle, 2);
+        }
+    }
+
+    // Finds the bounding boxes of the triangles between node columns 'strip'
+    //   and 'strip + 1', writing the minimums straight into their places in
+    //   the sorted arrays. When collisions are continuous the boxes also
+    //   cover where each node was at the start of the step, found as its
+    //   position less velocity * dt (pinned nodes do not move). Boxes are
+    //   grown by 'boundsPadding' on every side
+    private void DetermineStripBoundingBoxes(int strip) {
+        boolean swept = continuousCollision != null;
+        int trianglesPerStrip = 2 * nDepth;
+        for (int t = strip * trianglesPerStrip; t < (strip + 1) * trianglesPerStrip; t++) {
+            float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+            for (int v = 3 * t; v < 3 * t + 3; v++) {
+                int i = trianglesVertices[v];
+                float x = nodes[i], y = nodes[i + 1], z = nodes[i + 2];
+                minX = Math.min(minX, x);
+                minY = Math.min(minY, y);
+                minZ = Math.min(minZ, z);
+                maxX = Math.max(maxX, x);
+                maxY = Math.max(maxY, y);
+                maxZ = Math.max(maxZ, z);
+                if (swept && !nodesPinned[i / 3]) {
+                    x -= velocities[i] * dt;
+                    y -= velocities[i + 1] * dt;
+                    z -= velocities[i + 2] * dt;
+                    minX = Math.min(minX, x);
+                    minY = Math.min(minY, y);
+                    minZ = Math.min(minZ, z);
+                    maxX = Math.max(maxX, x);
+                    maxY = Math.max(maxY, y);
+                    maxZ = Math.max(maxZ, z);
+                }
+            }
+            minX -= boundsPadding;
+            minY -= boundsPadding;
+            minZ -= boundsPadding;
+            maxX += boundsPadding;
+            maxY += boundsPadding;
+            maxZ += boundsPadding;
+            trianglesXMinBound[t] = minX;
+            trianglesYMinBound[t] = minY;
+            trianglesZMinBound[t] = minZ;
+            trianglesXMinBoundSorted[trianglesXMinIndexPosition[t]] = minX;
+            trianglesYMinBoundSorted[trianglesYMinIndexPosition[t]] = minY;
+            trianglesZMinBoundSorted[trianglesZMinIndexPosition[t]] = minZ;
+            trianglesXMaxBound[t] = maxX;
+            trianglesYMaxBound[t] = maxY;
+            trianglesZMaxBound[t] = maxZ;
+        }
+    }
+
+    // For the 'triangleIndex'th triangle, returns the index in 'nodes' of the
+    // first node, 'A', describing the triangle eg.
+    // The 6'th triangle has vertices made by nodes 6, 7 and 8, so the first
+    // node is 6 (which is what this function returns (multiplied by 3, since
+    // 'nodes' is an array of coordinates))
+    private int GetIndexOfFirstNodeInTriangle(int triangleIndex) {
+        return 3 * (triangleIndex / 2 + triangleIndex / (2 * nDepth)
+                + (triangleIndex % 2) * (nDepth + 1));
+    }
+
+    private int GetIndexOfSecondNodeInTriangle(int triangleIndex) {
+        if (triangleIndex % (2 * nDepth) == 0) {
+            return GetIndexOfFirstNodeInTriangle(triangleIndex + 1);
+        } else {
+            return GetIndexOfThirdNodeInTriangle(triangleIndex - 1);
+        }
+    }
+
+    private int GetIndexOfThirdNodeInTriangle(int triangleIndex) {
+        return GetIndexOfFirstNodeInTriangle(triangleIndex) + 3 * 1;
+    }
+
+    private void PrepareBoundingBoxes() {
+        trianglesXMinBound = new float[nTriangles];
+        trianglesYMinBound = new float[nTriangles];
+        trianglesZMinBound = new float[nTriangles];
+        trianglesXMinBoundSorted = new float[nTriangles];
+        trianglesYMinBoundSorted = new float[nTriangles];
+        trianglesZMinBoundSorted = new float[nTriangles];
+        trianglesXMaxBound = new float[nTriangles];
+        trianglesYMaxBound = new float[nTriangles];
+        trianglesZMaxBound = new float[nTriangles];
+
+        trianglesXMinIndexOrder = AscendingArray(nTriangles);
+        trianglesYMinIndexOrder = AscendingArray(nTriangles);
+        trianglesZMinIndexOrder = AscendingArray(nTriangles);
+        trianglesXMinIndexPosition = AscendingArray(nTriangles);
+        trianglesYMinIndexPosition = AscendingArray(nTriangles);
+        trianglesZMinIndexPosition = AscendingArray(nTriangles);
+
+        radixSorters = new RadixSorter[3];
+        for (int axis = 0; axis < 3; axis++) {
+            radixSorters[axis] = new RadixSorter(nTriangles);
+        }
+
+        broadPhasePairs = new PairBuffer(nTriangles);
+        sweepChunkPairs = new PairBuffer[
+                Math.max(nTriangles - 1, 0) / sweepGrain + 1];
+        for (int c = 0; c < sweepChunkPairs.length; c++) {
+            sweepChunkPairs[c] = new PairBuffer();
+        }
+    }
+
+    // Returns an array with elements from 1...n inclusive of either end
+    private int[] AscendingArray(int n) {
+        int[] array = new int[n];
+        for (int i = 0; i < n; i++) {
+            array[i] = i;
+        }
+        return array;
+    }
+
+    // Returns the minimum of coordinate 'k' of the nodes at 'nodes' indices
+    //   'a', 'b' and 'c', over the whole step when collisions are continuous,
+    //   less 'boundsPadding'
+    private float SweptMinOfThree(int a, int b, int c, int k) {
+        float min = MinOfThree(nodes[a + k], nodes[b + k], nodes[c + k]);
+        if (continuousCollision != null) {
+            min = Math.min(min, MinOfThree(previousNodes[a + k],
+                    previousNodes[b + k], previousNodes[c + k]));
+        }
+        return min - boundsPadding;
+    }
+
+    // Returns the maximum of coordinate 'k' of the nodes at 'nodes' indices
+    //   'a', 'b' and 'c', over the whole step when collisions are continuous,
+    //   plus 'boundsPadding'
+    private float SweptMaxOfThree(int a, int b, int c, int k) {
+        float max = MaxOfThree(nodes[a + k], nodes[b + k], nodes[c + k]);
+        if (continuousCollision != null) {
+            max = Math.max(max, MaxOfThree(previousNodes[a + k],
+                    previousNodes[b + k], previousNodes[c + k]));
+        }
+        return max + boundsPadding;
+    }
+
+    // Returns the minimum value of a set of three numbers
+    private float MinOfThree(float a, float b, float c) {
+        return Math.min(Math.min(a, b), c);
+    }
+
+    // Returns the maximum value of a set of three numbers
+    private float MaxOfThree(float a, float b, float c) {
+        return Math.max(Math.max(a, b), c);
+    }
+
+    // Orders indices (held in 'trianglesXMinIndexOrder',
+    //   'trianglesYMinIndexOrder' etc) according to the ordering of their bound
+    //   counterparts (held in 'trianglesXMinBound', 'trianglesXMinBound' etc).
+    //   The three axes are independent, so are sorted in parallel
+    private void OrderInAllDirections() {
+        sortFromCold = true;
+        workerPool.ForEachChunk(0, 3, 1, sortBody);
+    }
+    
+    // Checks that everything is in order and instertion sorts if not (or
+    //   radix sorts, if the order has changed too much for that to be quick)
+    private void ReorderInAllDirections() {
+        sortFromCold = false;
+        workerPool.ForEachChunk(0, 3, 1, sortBody);
+    }
+
+    // Sorts the bounds along 'axis' (0 = x, 1 = y, 2 = z)
+    private void SortAxis(int axis) {
+        int[] data = axis == 0 ? trianglesXMinIndexOrder
+                : axis == 1 ? trianglesYMinIndexOrder : trianglesZMinIndexOrder;
+        float[] keys = axis == 0 ? trianglesXMinBoundSorted
+                : axis == 1 ? trianglesYMinBoundSorted : trianglesZMinBoundSorted;
+        int[] otherOrder = axis == 0 ? trianglesXMinIndexPosition
+                : axis == 1 ? trianglesYMinIndexPosition : trianglesZMinIndexPosition;
+        if (sortFromCold || RadixSorter.WorthSorting(keys)) {
+            radixSorters[axis].Sort(data, keys, otherOrder);
+        } else {
+            InsertionSortByKeys(data, keys, otherOrder);
+        }
+    }
+
+    // Insertion sort assumes that the observed element is in order if
+    // it is in order relative to adjacent elements, so the keys (which move
+    // little between steps) are sorted in close to linear time
+    private void InsertionSortByKeys(int[] data, float[] keys, int[] otherOrder) {
+        for (int i = 1; i < keys.length; i++) {
+            float key = keys[i];
+            if (!(key < keys[i - 1])) {
+                // Already in order; skip over this element
+                continue;
+            }
+
+            // Shift the larger elements up and insert this one below them
+            int datum = data[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                data[j + 1] = data[j];
+                otherOrder[data[j + 1]] = j + 1;
+                j--;
+            }
+            keys[j + 1] = key;
+            data[j + 1] = datum;
+            otherOrder[datum] = j + 1;
+        }
+    }
+
+    private void DetectCollisions() {
+        // Don't bother checking for collision in the last triangle,
+        //   since we always check for collision from i -> nTriangles anyway
+        //   (so if a collision involving 'trianglesXMinIndexOrder[last]'
+        //   existed, then it would have already been found from checking
+        //   previous triangles)
+        // Each observed triangle is independent given the sorted bounds, so
+        //   the sorted x range is swept in fixed chunks spread over the
+        //   worker pool, each chunk into its own buffer. Merging the buffers
+        //   in chunk order gives the same pairs in the same order for any
+        //   number of threads
+        int nChunks = (nTriangles - 1 + sweepGrain - 1) / sweepGrain;
+        workerPool.ForEachChunk(0, nChunks, 1, sweepBody);
+        
+        broadPhasePairs.Clear();
+        for (int c = 0; c < nChunks; c++) {
+            broadPhasePairs.AddAll(sweepChunkPairs[c]);
+        }
+        
+        // A collision is possible in each x, y and z directions: call on
+        //   the robust triangle-triangle intersection determination
+        //   mechanism for each candidate
+        DetectCollisions(broadPhasePairs);
+
+        /*
+        Analysis:
+        n is the number of triangles which is proportional to the number of nodes
+        (Sorting (initially) takes O(3 * n log n))
+        Sorting (on each update call, assuming relatively consistentordering between updates)
+          uses insertion sort and takes O(3 * n) time
+        Loop on xmin takes O(c * n) time average case?
+        Each candidate near in x is tested in y and z directly, in O(1)
+        
+        THE ENTIRE ALGORITHM:
+        O(3 * n) + O(c * n) = O(n)
+        */
+    }
+    
+    // Sweep and prune over fat boxes, keeping the candidates in 'pairCache'.
+    //   While no triangle leaves its fat box, no fat box or sorted key
+    //   changes, so the pairs of unmoved triangles stand; only the moved
+    //   triangles (the only ones the insertion sort can have shifted) are
+    //   looked up again. Pairs whose actual boxes overlap go on to the
+    //   narrow phase
+    private void DetectCachedCollisions() {
+        for (int m = 0; m < nMovedTriangles; m++) {
+            RequeryTriangle(movedTriangles[m]);
+        }
+        pairCache.CollectValid(trianglesMoved, cachedPairs);
+
+        broadPhasePairs.Clear();
+        for (int p = 0; p < cachedPairs.Size(); p++) {
+            int a = cachedPairs.GetFirst(p), b = cachedPairs.GetSecond(p);
+            if (trianglesXMinBound[a] <= trianglesXMaxBound[b]
+                    && trianglesXMinBound[b] <= trianglesXMaxBound[a]
+                    && trianglesYMinBound[a] <= trianglesYMaxBound[b]
+                    && trianglesYMinBound[b] <= trianglesYMaxBound[a]
+                    && trianglesZMinBound[a] <= trianglesZMaxBound[b]
+                    && trianglesZMinBound[b] <= trianglesZMaxBound[a]) {
+                broadPhasePairs.Add(a, b);
+            }
+        }
+        DetectCollisions(broadPhasePairs);
+    }
+
+    // Refits the fat box of each triangle whose box has left it, marking the
+    //   triangle as moved, and puts the fat minimums in the sorted keys
+    private void RefreshFatBoundingBoxes() {
+        int step = pairCache.NextStep();
+        float[] fat = trianglesFatBounds;
+        nMovedTriangles = 0;
+        for (int t = 0; t < nTriangles; t++) {
+            int f = 6 * t;
+            if (trianglesXMinBound[t] < fat[f]
+                    || trianglesYMinBound[t] < fat[f + 1]
+                    || trianglesZMinBound[t] < fat[f + 2]
+                    || trianglesXMaxBound[t] > fat[f + 3]
+                    || trianglesYMaxBound[t] > fat[f + 4]
+                    || trianglesZMaxBound[t] > fat[f + 5]) {
+                fat[f] = trianglesXMinBound[t] - fatMargin;
+                fat[f + 1] = trianglesYMinBound[t] - fatMargin;
+                fat[f + 2] = trianglesZMinBound[t] - fatMargin;
+                fat[f + 3] = trianglesXMaxBound[t] + fatMargin;
+                fat[f + 4] = trianglesYMaxBound[t] + fatMargin;
+                fat[f + 5] = trianglesZMaxBound[t] + fatMargin;
+                fatExtentX = Math.max(fatExtentX, fat[f + 3] - fat[f]);
+                trianglesMoved[t] = step;
+                movedTriangles[nMovedTriangles++] = t;
+            }
+            trianglesXMinBoundSorted[trianglesXMinIndexPosition[t]] = fat[f];
+            trianglesYMinBoundSorted[trianglesYMinIndexPosition[t]] = fat[f + 1];
+            trianglesZMinBoundSorted[trianglesZMinIndexPosition[t]] = fat[f + 2];
+        }
+    }
+
+    // Confirms in 'pairCache' every triangle outside its one-ring whose fat
+    //   box overlaps that of 'triangle': those after it in the sorted x order which start before
+    //   it ends, and those before it which start no further back than the
+    //   widest fat box
+    private void RequeryTriangle(int triangle) {
+        float[] fat = trianglesFatBounds;
+        int i = trianglesXMinIndexPosition[triangle];
+        for (int j = i + 1; j < nTriangles
+                && trianglesXMinBoundSorted[j] <= fat[6 * triangle + 3]; j++) {
+            ConfirmIfFatOverlap(triangle, trianglesXMinIndexOrder[j]);
+        }
+        for (int j = i - 1; j >= 0
+                && trianglesXMinBoundSorted[j] >= fat[6 * triangle] - fatExtentX; j--) {
+            ConfirmIfFatOverlap(triangle, trianglesXMinIndexOrder[j]);
+        }
+    }
+
+    private void ConfirmIfFatOverlap(int a, int b) {
+        float[] fat = trianglesFatBounds;
+        int f = 6 * a, g = 6 * b;
+        if (fat[f] <= fat[g + 3] && fat[g] <= fat[f + 3]
+                && fat[f + 1] <= fat[g + 4] && fat[g + 1] <= fat[f + 4]
+                && fat[f + 2] <= fat[g + 5] && fat[g + 2] <= fat[f + 5]
+                && !adjacencyTable.AreAdjacent(a, b)) {
+            pairCache.Confirm(a, b);
+        }
+    }
+
+    // Makes every triangle refit its fat box (and so find its pairs) at the
+    //   next step
+    private void InvalidateFatBoundingBoxes() {
+        for (int t = 0; t < nTriangles; t++) {
+            int f = 6 * t;
+            trianglesFatBounds[f] = Float.POSITIVE_INFINITY;
+            trianglesFatBounds[f + 1] = Float.POSITIVE_INFINITY;
+            trianglesFatBounds[f + 2] = Float.POSITIVE_INFINITY;
+            trianglesFatBounds[f + 3] = Float.NEGATIVE_INFINITY;
+            trianglesFatBounds[f + 4] = Float.NEGATIVE_INFINITY;
+            trianglesFatBounds[f + 5] = Float.NEGATIVE_INFINITY;
+        }
+        fatExtentX = 0;
+        pairCache.Clear();
+    }
+
+    // Sweeps the chunks 'start' to 'end - 1' of the sorted x range
+    private void SweepChunks(int start, int end) {
+        for (int c = start; c < end; c++) {
+            PairBuffer pairs = sweepChunkPairs[c];
+            pairs.Clear();
+            int last = Math.min((c + 1) * sweepGrain, nTriangles - 1);
+            for (int i = c * sweepGrain; i < last; i++) {
+                SweepTriangle(i, pairs);
+            }
+        }
+    }
+    
+    // Adds to 'pairs' the triangles after 'trianglesXMinIndexOrder[i]' in
+    //   the sorted x order that it is near in all of x, y and z. Every pair
+    //   near in x is found from whichever of its triangles comes first in x,
+    //   so y and z are tested directly on each of those rather than swept
+    //   (a sweep from the observed triangle's place in y or z order would
+    //   miss the triangles before it there). Boxes which only touch count
+    //   as near, as in the other broad phases
+    private void SweepTriangle(int i, PairBuffer pairs) {
+        int observedTriangleIndex = trianglesXMinIndexOrder[i];
+        float maxXOfObserved = trianglesXMaxBound[observedTriangleIndex];
+        float minYOfObserved = trianglesYMinBound[observedTriangleIndex];
+        float maxYOfObserved = trianglesYMaxBound[observedTriangleIndex];
+        float minZOfObserved = trianglesZMinBound[observedTriangleIndex];
+        float maxZOfObserved = trianglesZMaxBound[observedTriangleIndex];
+        for (int j = i + 1; j < nTriangles
+                && trianglesXMinBoundSorted[j] <= maxXOfObserved; j++) {
+            int other = trianglesXMinIndexOrder[j];
+            if (trianglesYMinBound[other] <= maxYOfObserved
+                    && trianglesYMaxBound[other] >= minYOfObserved
+                    && trianglesZMinBound[other] <= maxZOfObserved
+                    && trianglesZMaxBound[other] >= minZOfObserved
+                    && !adjacencyTable.AreAdjacent(observedTriangleIndex, other)) {
+                pairs.Add(observedTriangleIndex, other);
+            }
+        }
+    }
+    
+    // Runs the narrow phase on each of the candidate pairs in 'pairs'
+    private void DetectCollisions(PairBuffer pairs) {
+        for (int p = 0; p < pairs.Size(); p++) {
+            TrianglesDetectCollision(pairs.GetFirst(p), pairs.GetSecond(p));
+        }
+
+        if (contactSolver != null) {
+            contactBuffer.Clear();
+            proximityDetection.FindProximities(pairs, nodes);
+        }
+
+        if (continuousCollision != null) {
+            // Sweep the same pairs over the step, which also catches those
+            //   that passed through each other within it
+            continuousCollision.FindImpacts(pairs, previousNodes, nodes);
+            for (int i = 0; i < continuousCollision.GetNumberOfImpacts(); i++) {
+                for (int k = 0; k < 4; k++) {
+                    NodeBleed(continuousCollision.GetImpactNode(i, k));
+                }
+            }
+        }
+    }
+    
+    // Given indices of triangle (which are presumably close in proximity, and
+    //   share no vertex since the broad phases drop such pairs),
+    //   detect if they intersect, and if so colour both for display (the
+    //   response comes from the contacts found by 'proximityDetection')
+    private void TrianglesDetectCollision(int thisTriangle,
+            int otherTriangle) {
+        // Vertices are read in place from 'nodes' by 'trianglePair'
+        trianglePair.SetNodes(nodes);
+        trianglePair.SetTriangle1(GetIndexOfFirstNodeInTriangle(thisTriangle),
+                GetIndexOfSecondNodeInTriangle(thisTriangle),
+                GetIndexOfThirdNodeInTriangle(thisTriangle));
+        trianglePair.SetTriangle2(GetIndexOfFirstNodeInTriangle(otherTriangle),
+                GetIndexOfSecondNodeInTriangle(otherTriangle),
+                GetIndexOfThirdNodeInTriangle(otherTriangle));
+        
+        if (trianglePair.DetermineCollision()) {
+            ColouriseTriangle(thisTriangle);
+            ColouriseTriangle(otherTriangle);
+        }
+    }
+    
+    // Sets the colour of all three edges of the triangle to red
+    private void ColouriseTriangle(int triangle) {
+        int xAIndex = GetIndexOfFirstNodeInTriangle(triangle);
+        int xBIndex = GetIndexOfSecondNodeInTriangle(triangle);
+        int xCIndex = GetIndexOfThirdNodeInTriangle(triangle);
+        
+        NodeBleed(xAIndex);
+        NodeBleed(xBIndex);
+        NodeBleed(xCIndex);
+    }
+    
+    // Flags the node as colliding (for the visual component of the simulation)
+    private void NodeBleed(int nodeXIndex) {
+        nodesColliding[nodeXIndex / 3] = true;
+        tilesCollided[nodeXIndex / 3 / (tileWidth * (nDepth + 1))] = true;
+    }
+
+}
@@ -6,6 +6,10 @@
 
 package cloth_v11;
 
+import java.io.File;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
 /**
  *
  * @author User
@@ -32,7 +36,68 @@ public class Cloth_v11 {
             'possibleZCollisions'
     */
     public static void main(String[] args) {
-        new Simulation("Cloth Simulation: Version 11");
+        if (args.length > 0 && args[0].equals("-headless")) {
+            // Run the physics alone, without the scene graph or a display,
+            //   though vecmath must still be on the class path
+            //   (-headless [steps] [threads])
+            int steps = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+            RunHeadless(steps, threads);
+        } else if (args.length > 0 && args[0].equals("-capture")) {
+            // Render frames to PNG files in software, without the scene
+            //   graph or a display (-capture [frames] [directory] [threads]),
+            //   'threads' both stepping the cloth and encoding the frames
+            int frames = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+            String directory = args.length > 2 ? args[2] : "captures";
+            int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+            RunCapture(frames, directory, threads);
+        } else {
+            new Simulation("Cloth Simulation: Version 11");
+        }
+    }
+
+    // Steps the default cloth 'steps' times and reports the step rate
+    private static void RunHeadless(int steps, int threads) {
+        ClothSolver solver = new ClothSolver();
+        solver.SetThreadCount(threads);
+
+        long start = System.nanoTime();
+        solver.Step(steps);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        solver.GetWorkerPool().Shutdown();
+
+        Arit.NL(steps + " steps in " + seconds + " s ("
+                + (int) (steps / seconds) + " steps/s)");
+    }
+
+    // Steps the default cloth a frame ('Simulation.substepsPerFrame' steps)
+    //   at a time, saving each frame as seen from the default camera
+    private static void RunCapture(int frames, String directory, int threads) {
+        ClothSolver solver = new ClothSolver();
+        solver.SetThreadCount(threads);
+        SnapshotBuffer snapshots = new SnapshotBuffer(solver);
+        SoftwareRenderer renderer = new SoftwareRenderer(500, 500);
+        FrameCapture capture = new FrameCapture(new File(directory), threads);
+        Point3d eye = new Point3d(0, 10, 3); // As the default camera
+        Point3d focus = new Point3d(0, 0, 0);
+        Vector3d up = new Vector3d(0, 1, 0);
+
+        long start = System.nanoTime();
+        for (int frame = 0; frame < frames; frame++) {
+            solver.Step(Simulation.substepsPerFrame);
+            snapshots.Publish(solver);
+            SnapshotBuffer.Snapshot snapshot = snapshots.Read();
+            capture.Save(renderer.Render(snapshot.GetPositions(),
+                    snapshot.GetNormals(), snapshot.GetColours(),
+                    solver.GetWidth(), solver.GetDepth(), eye, focus, up));
+        }
+        capture.Finish();
+        solver.GetWorkerPool().Shutdown();
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Arit.NL(frames + " frames saved to " + capture.GetDirectory() + " in "
+                + seconds + " s");
     }
     
 }
@@ -0,0 +1,434 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.ArrayList;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * The static obstacles the cloth collides with: spheres, capsules,
+ * axis-aligned boxes, planes (solid below) and 'SignedDistanceGrid's for
+ * arbitrary meshes. Each kind of shape is held in its own primitive arrays,
+ * so there is no per-node dispatch: for each shape the signed distance and
+ * outward normal of a range of nodes are found by one branch-free loop into
+ * scratch arrays, and a second loop pushes out the nodes closer than
+ * 'thickness'. A pushed node loses any velocity into the shape (inelastic)
+ * and Coulomb friction slows it along the surface. Shapes whose bounds miss
+ * those of the range of nodes are skipped.
+ *
+ * 'Resolve' only writes the nodes in its range, so ranges may be resolved
+ * concurrently
+ */
+public class ColliderSet {
+
+    private float thickness, friction;
+
+    // Spheres: centre and radius
+    private float[] spheresX, spheresY, spheresZ, spheresRadius;
+    private int nSpheres;
+
+    // Capsules: the ends of the core segment and the radius about it
+    private float[] capsulesAX, capsulesAY, capsulesAZ,
+            capsulesBX, capsulesBY, capsulesBZ, capsulesRadius;
+    private int nCapsules;
+
+    // Boxes: centre and half of the size along each axis
+    private float[] boxesX, boxesY, boxesZ,
+            boxesHalfX, boxesHalfY, boxesHalfZ;
+    private int nBoxes;
+
+    // Planes: unit normal and offset ('normal . x = offset' on the plane)
+    private float[] planesNormalX, planesNormalY, planesNormalZ, planesOffset;
+    private int nPlanes;
+
+    private ArrayList<SignedDistanceGrid> grids;
+
+    private ThreadLocal<Scratch> scratch; // Per-thread distances and normals
+
+    public ColliderSet(float thickness) {
+        this.thickness = thickness;
+        friction = 0.3f;
+
+        spheresX = new float[4];
+        spheresY = new float[4];
+        spheresZ = new float[4];
+        spheresRadius = new float[4];
+        capsulesAX = new float[4];
+        capsulesAY = new float[4];
+        capsulesAZ = new float[4];
+        capsulesBX = new float[4];
+        capsulesBY = new float[4];
+        capsulesBZ = new float[4];
+        capsulesRadius = new float[4];
+        boxesX = new float[4];
+        boxesY = new float[4];
+        boxesZ = new float[4];
+        boxesHalfX = new float[4];
+        boxesHalfY = new float[4];
+        boxesHalfZ = new float[4];
+        planesNormalX = new float[4];
+        planesNormalY = new float[4];
+        planesNormalZ = new float[4];
+        planesOffset = new float[4];
+        grids = new ArrayList<>();
+
+        scratch = new ThreadLocal<Scratch>() {
+            @Override
+            protected Scratch initialValue() {
+                return new Scratch();
+            }
+        };
+    }
+
+    public void SetThickness(float thickness) {
+        this.thickness = thickness;
+    }
+
+    public float GetThickness() {
+        return thickness;
+    }
+
+    // Sets the coefficient of friction between the cloth and every shape
+    public void SetFriction(float friction) {
+        this.friction = friction;
+    }
+
+    public float GetFriction() {
+        return friction;
+    }
+
+    public void AddSphere(float x, float y, float z, float radius) {
+        if (nSpheres == spheresX.length) {
+            spheresX = Grow(spheresX);
+            spheresY = Grow(spheresY);
+            spheresZ = Grow(spheresZ);
+            spheresRadius = Grow(spheresRadius);
+        }
+        spheresX[nSpheres] = x;
+        spheresY[nSpheres] = y;
+        spheresZ[nSpheres] = z;
+        spheresRadius[nSpheres] = radius;
+        nSpheres++;
+    }
+
+    // Adds the points within 'radius' of the segment from A to B
+    public void AddCapsule(float aX, float aY, float aZ,
+            float bX, float bY, float bZ, float radius) {
+        if (nCapsules == capsulesAX.length) {
+            capsulesAX = Grow(capsulesAX);
+            capsulesAY = Grow(capsulesAY);
+            capsulesAZ = Grow(capsulesAZ);
+            capsulesBX = Grow(capsulesBX);
+            capsulesBY = Grow(capsulesBY);
+            capsulesBZ = Grow(capsulesBZ);
+            capsulesRadius = Grow(capsulesRadius);
+        }
+        capsulesAX[nCapsules] = aX;
+        capsulesAY[nCapsules] = aY;
+        capsulesAZ[nCapsules] = aZ;
+        capsulesBX[nCapsules] = bX;
+        capsulesBY[nCapsules] = bY;
+        capsulesBZ[nCapsules] = bZ;
+        capsulesRadius[nCapsules] = radius;
+        nCapsules++;
+    }
+
+    // Adds an axis-aligned box from its centre and its size along each axis
+    public void AddBox(float x, float y, float z,
+            float sizeX, float sizeY, float sizeZ) {
+        if (nBoxes == boxesX.length) {
+            boxesX = Grow(boxesX);
+            boxesY = Grow(boxesY);
+            boxesZ = Grow(boxesZ);
+            boxesHalfX = Grow(boxesHalfX);
+            boxesHalfY = Grow(boxesHalfY);
+            boxesHalfZ = Grow(boxesHalfZ);
+        }
+        boxesX[nBoxes] = x;
+        boxesY[nBoxes] = y;
+        boxesZ[nBoxes] = z;
+        boxesHalfX[nBoxes] = 0.5f * sizeX;
+        boxesHalfY[nBoxes] = 0.5f * sizeY;
+        boxesHalfZ[nBoxes] = 0.5f * sizeZ;
+        nBoxes++;
+    }
+
+    // Adds the half-space below the plane through the point with the given
+    //   (outward) normal
+    public void AddPlane(float pointX, float pointY, float pointZ,
+            float normalX, float normalY, float normalZ) {
+        if (nPlanes == planesNormalX.length) {
+            planesNormalX = Grow(planesNormalX);
+            planesNormalY = Grow(planesNormalY);
+            planesNormalZ = Grow(planesNormalZ);
+            planesOffset = Grow(planesOffset);
+        }
+        float length = Arit.GetLength(normalX, normalY, normalZ);
+        normalX /= length;
+        normalY /= length;
+        normalZ /= length;
+        planesNormalX[nPlanes] = normalX;
+        planesNormalY[nPlanes] = normalY;
+        planesNormalZ[nPlanes] = normalZ;
+        planesOffset[nPlanes] = normalX * pointX + normalY * pointY
+                + normalZ * pointZ;
+        nPlanes++;
+    }
+
+    public void AddGrid(SignedDistanceGrid grid) {
+        grids.add(grid);
+    }
+
+    public void Clear() {
+        nSpheres = 0;
+        nCapsules = 0;
+        nBoxes = 0;
+        nPlanes = 0;
+        grids.clear();
+    }
+
+    public boolean IsEmpty() {
+        return nSpheres + nCapsules + nBoxes + nPlanes == 0 && grids.isEmpty();
+    }
+
+    // Pushes nodes 'start' to 'end - 1' (not pinned) out of every shape
+    public void Resolve(float[] nodes, float[] velocities,
+            boolean[] nodesPinned, int start, int end) {
+        if (end <= start) {
+            return;
+        }
+        Scratch s = scratch.get();
+        s.Reserve(end - start);
+
+        // Bounds of the range, to skip shapes far from it
+        float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        for (int i = 3 * start; i < 3 * end; i += 3) {
+            minX = Math.min(minX, nodes[i]);
+            minY = Math.min(minY, nodes[i + 1]);
+            minZ = Math.min(minZ, nodes[i + 2]);
+            maxX = Math.max(maxX, nodes[i]);
+            maxY = Math.max(maxY, nodes[i + 1]);
+            maxZ = Math.max(maxZ, nodes[i + 2]);
+        }
+        minX -= thickness;
+        minY -= thickness;
+        minZ -= thickness;
+        maxX += thickness;
+        maxY += thickness;
+        maxZ += thickness;
+
+        for (int k = 0; k < nSpheres; k++) {
+            float r = spheresRadius[k];
+            if (spheresX[k] - r > maxX || spheresX[k] + r < minX
+                    || spheresY[k] - r > maxY || spheresY[k] + r < minY
+                    || spheresZ[k] - r > maxZ || spheresZ[k] + r < minZ) {
+                continue;
+            }
+            SphereDistances(nodes, start, end, spheresX[k], spheresY[k],
+                    spheresZ[k], r, s);
+            PushOut(nodes, velocities, nodesPinned, start, end, s);
+        }
+
+        for (int k = 0; k < nCapsules; k++) {
+            float r = capsulesRadius[k];
+            if (Math.min(capsulesAX[k], capsulesBX[k]) - r > maxX
+                    || Math.max(capsulesAX[k], capsulesBX[k]) + r < minX
+                    || Math.min(capsulesAY[k], capsulesBY[k]) - r > maxY
+                    || Math.max(capsulesAY[k], capsulesBY[k]) + r < minY
+                    || Math.min(capsulesAZ[k], capsulesBZ[k]) - r > maxZ
+                    || Math.max(capsulesAZ[k], capsulesBZ[k]) + r < minZ) {
+                continue;
+            }
+            CapsuleDistances(nodes, start, end, k, s);
+            PushOut(nodes, velocities, nodesPinned, start, end, s);
+        }
+
+        for (int k = 0; k < nBoxes; k++) {
+            if (boxesX[k] - boxesHalfX[k] > maxX || boxesX[k] + boxesHalfX[k] < minX
+                    || boxesY[k] - boxesHalfY[k] > maxY || boxesY[k] + boxesHalfY[k] < minY
+                    || boxesZ[k] - boxesHalfZ[k] > maxZ || boxesZ[k] + boxesHalfZ[k] < minZ) {
+                continue;
+            }
+            BoxDistances(nodes, start, end, k, s);
+            PushOut(nodes, velocities, nodesPinned, start, end, s);
+        }
+
+        for (int k = 0; k < nPlanes; k++) {
+            // The lowest corner of the bounds along the normal
+            float nx = planesNormalX[k], ny = planesNormalY[k], nz = planesNormalZ[k];
+            float lowest = nx * (nx > 0 ? minX : maxX) + ny * (ny > 0 ? minY : maxY)
+                    + nz * (nz > 0 ? minZ : maxZ);
+            if (lowest > planesOffset[k]) {
+                continue;
+            }
+            PlaneDistances(nodes, start, end, k, s);
+            PushOut(nodes, velocities, nodesPinned, start, end, s);
+        }
+
+        for (int k = 0; k < grids.size(); k++) {
+            SignedDistanceGrid grid = grids.get(k);
+            if (!grid.Overlaps(minX, minY, minZ, maxX, maxY, maxZ)) {
+                continue;
+            }
+            grid.Distances(nodes, start, end, s.distance, s.normalX,
+                    s.normalY, s.normalZ);
+            PushOut(nodes, velocities, nodesPinned, start, end, s);
+        }
+    }
+
+    private static void SphereDistances(float[] nodes, int start, int end,
+            float x, float y, float z, float radius, Scratch s) {
+        for (int node = start, j = 0; node < end; node++, j++) {
+            float dx = nodes[3 * node] - x;
+            float dy = nodes[3 * node + 1] - y;
+            float dz = nodes[3 * node + 2] - z;
+            float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            float inverse = 1 / Math.max(length, Float.MIN_NORMAL);
+            s.distance[j] = length - radius;
+            s.normalX[j] = dx * inverse;
+            s.normalY[j] = dy * inverse;
+            s.normalZ[j] = dz * inverse;
+        }
+    }
+
+    private void CapsuleDistances(float[] nodes, int start, int end, int k,
+            Scratch s) {
+        float aX = capsulesAX[k], aY = capsulesAY[k], aZ = capsulesAZ[k];
+        float abX = capsulesBX[k] - aX;
+        float abY = capsulesBY[k] - aY;
+        float abZ = capsulesBZ[k] - aZ;
+        float inverseLength2 = 1 / Math.max(abX * abX + abY * abY + abZ * abZ,
+                Float.MIN_NORMAL);
+        float radius = capsulesRadius[k];
+        for (int node = start, j = 0; node < end; node++, j++) {
+            float pX = nodes[3 * node] - aX;
+            float pY = nodes[3 * node + 1] - aY;
+            float pZ = nodes[3 * node + 2] - aZ;
+            // Closest point of the segment
+            float t = (pX * abX + pY * abY + pZ * abZ) * inverseLength2;
+            t = Math.min(Math.max(t, 0), 1);
+            float dx = pX - t * abX;
+            float dy = pY - t * abY;
+            float dz = pZ - t * abZ;
+            float length = (float) Math.sqrt(dx * dx + dy * dy + dz * dz);
+            float inverse = 1 / Math.max(length, Float.MIN_NORMAL);
+            s.distance[j] = length - radius;
+            s.normalX[j] = dx * inverse;
+            s.normalY[j] = dy * inverse;
+            s.normalZ[j] = dz * inverse;
+        }
+    }
+
+    private void BoxDistances(float[] nodes, int start, int end, int k,
+            Scratch s) {
+        float x = boxesX[k], y = boxesY[k], z = boxesZ[k];
+        float halfX = boxesHalfX[k], halfY = boxesHalfY[k], halfZ = boxesHalfZ[k];
+        for (int node = start, j = 0; node < end; node++, j++) {
+            float pX = nodes[3 * node] - x;
+            float pY = nodes[3 * node + 1] - y;
+            float pZ = nodes[3 * node + 2] - z;
+            // Distance outside each pair of faces (negative inside)
+            float qX = Math.abs(pX) - halfX;
+            float qY = Math.abs(pY) - halfY;
+            float qZ = Math.abs(pZ) - halfZ;
+            float oX = Math.max(qX, 0), oY = Math.max(qY, 0), oZ = Math.max(qZ, 0);
+            float outside = (float) Math.sqrt(oX * oX + oY * oY + oZ * oZ);
+            float inside = Math.min(Math.max(qX, Math.max(qY, qZ)), 0);
+            s.distance[j] = outside + inside;
+            if (outside > 0) {
+                // Towards the nearest point of the surface
+                float inverse = 1 / outside;
+                s.normalX[j] = Math.copySign(oX * inverse, pX);
+                s.normalY[j] = Math.copySign(oY * inverse, pY);
+                s.normalZ[j] = Math.copySign(oZ * inverse, pZ);
+            } else {
+                // Out through the nearest face
+                boolean alongX = qX >= qY && qX >= qZ;
+                boolean alongY = !alongX && qY >= qZ;
+                s.normalX[j] = alongX ? Math.copySign(1, pX) : 0;
+                s.normalY[j] = alongY ? Math.copySign(1, pY) : 0;
+                s.normalZ[j] = !alongX && !alongY ? Math.copySign(1, pZ) : 0;
+            }
+        }
+    }
+
+    private void PlaneDistances(float[] nodes, int start, int end, int k,
+            Scratch s) {
+        float nX = planesNormalX[k], nY = planesNormalY[k], nZ = planesNormalZ[k];
+        float offset = planesOffset[k];
+        for (int node = start, j = 0; node < end; node++, j++) {
+            s.distance[j] = nX * nodes[3 * node] + nY * nodes[3 * node + 1]
+                    + nZ * nodes[3 * node + 2] - offset;
+            s.normalX[j] = nX;
+            s.normalY[j] = nY;
+            s.normalZ[j] = nZ;
+        }
+    }
+
+    // Moves the nodes in range closer than 'thickness' to the shape whose
+    //   distances and normals are in 's' out along the normal, then removes
+    //   their velocity into the shape and applies friction
+    private void PushOut(float[] nodes, float[] velocities,
+            boolean[] nodesPinned, int start, int end, Scratch s) {
+        for (int node = start, j = 0; node < end; node++, j++) {
+            float depth = thickness - s.distance[j];
+            if (!(depth > 0) || nodesPinned[node]) {
+                continue;
+            }
+            int i = 3 * node;
+            float nX = s.normalX[j], nY = s.normalY[j], nZ = s.normalZ[j];
+            nodes[i] += depth * nX;
+            nodes[i + 1] += depth * nY;
+            nodes[i + 2] += depth * nZ;
+
+            float normalVelocity = velocities[i] * nX + velocities[i + 1] * nY
+                    + velocities[i + 2] * nZ;
+            if (normalVelocity >= 0) {
+                continue;
+            }
+            float tangentX = velocities[i] - normalVelocity * nX;
+            float tangentY = velocities[i + 1] - normalVelocity * nY;
+            float tangentZ = velocities[i + 2] - normalVelocity * nZ;
+            float tangentSpeed = (float) Math.sqrt(tangentX * tangentX
+                    + tangentY * tangentY + tangentZ * tangentZ);
+            // Friction removes at most 'friction' times the normal speed lost
+            float keep = tangentSpeed > 0
+                    ? Math.max(1 + friction * normalVelocity / tangentSpeed, 0)
+                    : 0;
+            velocities[i] = keep * tangentX;
+            velocities[i + 1] = keep * tangentY;
+            velocities[i + 2] = keep * tangentZ;
+        }
+    }
+
+    private static float[] Grow(float[] array) {
+        float[] newArray = new float[2 * array.length];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    // Signed distances and outward normals of one thread's range of nodes
+    //   to the shape being resolved
+    private static class Scratch {
+
+        float[] distance = new float[0], normalX, normalY, normalZ;
+
+        void Reserve(int size) {
+            if (distance.length < size) {
+                distance = new float[size];
+                normalX = new float[size];
+                normalY = new float[size];
+                normalZ = new float[size];
+            }
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Contacts between pairs of features (vertex-face or edge-edge), held in
+ * primitive arrays which are cleared rather than reallocated. A contact is
+ * four nodes (indices into 'nodes') with weights such that the weighted sum
+ * of their positions is the separation of the two features, and a unit
+ * normal along which that separation is measured. Read by 'ContactSolver'
+ */
+public class ContactBuffer {
+
+    int[] contactsNodes; // Four per contact
+    float[] contactsWeights; // Four per contact
+    float[] contactsNormal; // Three per contact
+    int nContacts;
+
+    public ContactBuffer() {
+        contactsNodes = new int[4 * 64];
+        contactsWeights = new float[4 * 64];
+        contactsNormal = new float[3 * 64];
+    }
+
+    public void Clear() {
+        nContacts = 0;
+    }
+
+    public int Size() {
+        return nContacts;
+    }
+
+    public void Add(int node0, int node1, int node2, int node3,
+            float weight0, float weight1, float weight2, float weight3,
+            float normalX, float normalY, float normalZ) {
+        if (4 * (nContacts + 1) > contactsNodes.length) {
+            Grow();
+        }
+        int i = 4 * nContacts;
+        contactsNodes[i] = node0;
+        contactsNodes[i + 1] = node1;
+        contactsNodes[i + 2] = node2;
+        contactsNodes[i + 3] = node3;
+        contactsWeights[i] = weight0;
+        contactsWeights[i + 1] = weight1;
+        contactsWeights[i + 2] = weight2;
+        contactsWeights[i + 3] = weight3;
+        contactsNormal[3 * nContacts] = normalX;
+        contactsNormal[3 * nContacts + 1] = normalY;
+        contactsNormal[3 * nContacts + 2] = normalZ;
+        nContacts++;
+    }
+
+    private void Grow() {
+        int[] newNodes = new int[2 * contactsNodes.length];
+        float[] newWeights = new float[2 * contactsWeights.length];
+        float[] newNormal = new float[2 * contactsNormal.length];
+        System.arraycopy(contactsNodes, 0, newNodes, 0, 4 * nContacts);
+        System.arraycopy(contactsWeights, 0, newWeights, 0, 4 * nContacts);
+        System.arraycopy(contactsNormal, 0, newNormal, 0, 3 * nContacts);
+        contactsNodes = newNodes;
+        contactsWeights = newWeights;
+        contactsNormal = newNormal;
+    }
+
+}
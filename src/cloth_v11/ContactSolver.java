@@ -0,0 +1,274 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Pushes apart the features of the contacts in a 'ContactBuffer'. Each
+ * contact is a non-penetration constraint (the features' separation along
+ * the normal must be at least 'thickness') solved by impulses: the nodes are
+ * moved apart and their velocities changed by the same amount over the
+ * step, any remaining approach along the normal is stopped (inelastically)
+ * and Coulomb friction limits the tangential relative velocity. The
+ * impulse on each contact is accumulated over a few Gauss-Seidel iterations
+ * and never becomes attractive.
+ *
+ * Contacts are coloured so that no two of the same colour share a node; a
+ * colour's contacts are then independent and are split across threads.
+ * Contacts left over once the colours run out are resolved on one thread
+ */
+public class ContactSolver {
+
+    private static final int contactGrain = 256; // Fewest contacts per task
+    private static final int serialColour = 63; // Colours 0-62 fit a long
+
+    private float[] nodesInverseMass; // Zero for pinned nodes
+    private float thickness, friction;
+    private int iterations;
+
+    // Colouring
+    private long[] nodesColourMask; // Colours used by each node's contacts
+    private int[] contactsColour, contactsOrder; // Contacts by colour
+    private int[] colourOffsets;
+    private float[] contactsImpulse; // Accumulated normal impulse
+
+    // Parallelism
+    private WorkerPool workerPool;
+    private WorkerPool.RangeBody contactsBody;
+
+    // Being solved
+    private ContactBuffer contacts;
+    private float[] nodes, velocities;
+    private float dt;
+
+    public ContactSolver(boolean[] nodesPinned, float thickness) {
+        int nNodes = nodesPinned.length;
+        nodesInverseMass = new float[nNodes];
+        for (int node = 0; node < nNodes; node++) {
+            // Unit mass, as in the integrators
+            nodesInverseMass[node] = nodesPinned[node] ? 0 : 1;
+        }
+        this.thickness = thickness;
+        friction = 0.3f;
+        iterations = 4;
+
+        nodesColourMask = new long[nNodes];
+        contactsColour = new int[64];
+        contactsOrder = new int[64];
+        contactsImpulse = new float[64];
+        colourOffsets = new int[serialColour + 2];
+
+        workerPool = new WorkerPool(1);
+        contactsBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                ResolveContacts(start, end);
+            }
+        };
+    }
+
+    public void SetWorkerPool(WorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    public void SetThickness(float thickness) {
+        this.thickness = thickness;
+    }
+
+    public float GetThickness() {
+        return thickness;
+    }
+
+    // Sets the coefficient of friction between the cloth and itself
+    public void SetFriction(float friction) {
+        this.friction = friction;
+    }
+
+    public float GetFriction() {
+        return friction;
+    }
+
+    public void SetIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public int GetIterations() {
+        return iterations;
+    }
+
+    // Resolves 'contacts' by changing 'nodes' and 'velocities' at the end
+    //   of a step of 'dt'
+    public void Resolve(ContactBuffer contacts, float[] nodes,
+            float[] velocities, float dt) {
+        int nContacts = contacts.Size();
+        if (nContacts == 0) {
+            return;
+        }
+        this.contacts = contacts;
+        this.nodes = nodes;
+        this.velocities = velocities;
+        this.dt = dt;
+
+        ColourContacts(nContacts);
+        for (int c = 0; c < nContacts; c++) {
+            contactsImpulse[c] = 0;
+        }
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int colour = 0; colour < serialColour; colour++) {
+                workerPool.ForEachChunk(colourOffsets[colour],
+                        colourOffsets[colour + 1], contactGrain, contactsBody);
+            }
+            ResolveContacts(colourOffsets[serialColour],
+                    colourOffsets[serialColour + 1]);
+        }
+    }
+
+    // Greedily gives each contact the lowest colour none of its nodes' other
+    //   contacts have, then orders the contacts by colour
+    private void ColourContacts(int nContacts) {
+        if (nContacts > contactsOrder.length) {
+            int capacity = Math.max(nContacts, 2 * contactsOrder.length);
+            contactsColour = new int[capacity];
+            contactsOrder = new int[capacity];
+            contactsImpulse = new float[capacity];
+        }
+
+        int[] contactsNodes = contacts.contactsNodes;
+        for (int c = 0; c < nContacts; c++) {
+            long used = 0;
+            for (int k = 0; k < 4; k++) {
+                used |= nodesColourMask[contactsNodes[4 * c + k] / 3];
+            }
+            int colour = Math.min(Long.numberOfTrailingZeros(~used), serialColour);
+            contactsColour[c] = colour;
+            if (colour < serialColour) {
+                for (int k = 0; k < 4; k++) {
+                    nodesColourMask[contactsNodes[4 * c + k] / 3] |= 1L << colour;
+                }
+            }
+        }
+
+        // Counting sort by colour, stable so the order is deterministic
+        Arrays.fill(colourOffsets, 0);
+        for (int c = 0; c < nContacts; c++) {
+            colourOffsets[contactsColour[c] + 1]++;
+        }
+        for (int colour = 0; colour <= serialColour; colour++) {
+            colourOffsets[colour + 1] += colourOffsets[colour];
+        }
+        for (int c = 0; c < nContacts; c++) {
+            contactsOrder[colourOffsets[contactsColour[c]]++] = c;
+        }
+        for (int colour = serialColour; colour > 0; colour--) {
+            colourOffsets[colour] = colourOffsets[colour - 1];
+        }
+        colourOffsets[0] = 0;
+
+        // Leave the masks clear for the next step
+        for (int c = 0; c < nContacts; c++) {
+            for (int k = 0; k < 4; k++) {
+                nodesColourMask[contactsNodes[4 * c + k] / 3] = 0;
+            }
+        }
+    }
+
+    // Resolves the contacts 'contactsOrder[start]' to 'contactsOrder[end - 1]'
+    private void ResolveContacts(int start, int end) {
+        for (int o = start; o < end; o++) {
+            ResolveContact(contactsOrder[o]);
+        }
+    }
+
+    private void ResolveContact(int c) {
+        int[] contactNodes = contacts.contactsNodes;
+        float[] weights = contacts.contactsWeights;
+        float normalX = contacts.contactsNormal[3 * c];
+        float normalY = contacts.contactsNormal[3 * c + 1];
+        float normalZ = contacts.contactsNormal[3 * c + 2];
+
+        // Separation of the features and their relative velocity
+        float separationX = 0, separationY = 0, separationZ = 0;
+        float velocityX = 0, velocityY = 0, velocityZ = 0;
+        float weightSum = 0;
+        for (int k = 4 * c; k < 4 * c + 4; k++) {
+            int i = contactNodes[k];
+            float w = weights[k];
+            separationX += w * nodes[i];
+            separationY += w * nodes[i + 1];
+            separationZ += w * nodes[i + 2];
+            velocityX += w * velocities[i];
+            velocityY += w * velocities[i + 1];
+            velocityZ += w * velocities[i + 2];
+            weightSum += w * w * nodesInverseMass[i / 3];
+        }
+        if (weightSum == 0) {
+            return;
+        }
+
+        // Normal impulse (as a distance) to reach 'thickness', accumulated so
+        //   that it only ever pushes
+        float separation = separationX * normalX + separationY * normalY
+                + separationZ * normalZ;
+        float impulse = (thickness - separation) / weightSum;
+        float accumulated = Math.max(contactsImpulse[c] + impulse, 0);
+        impulse = accumulated - contactsImpulse[c];
+        contactsImpulse[c] = accumulated;
+        if (accumulated == 0) {
+            // Separated
+            return;
+        }
+        float moveX = impulse * normalX;
+        float moveY = impulse * normalY;
+        float moveZ = impulse * normalZ;
+
+        // The features should not keep approaching: any normal velocity
+        //   towards each other left after the move is removed (inelastic)
+        float normalVelocity = velocityX * normalX + velocityY * normalY
+                + velocityZ * normalZ;
+        float approach = -(normalVelocity + impulse * weightSum / dt);
+        float stopX = 0, stopY = 0, stopZ = 0;
+        if (approach > 0) {
+            stopX = approach / weightSum * normalX;
+            stopY = approach / weightSum * normalY;
+            stopZ = approach / weightSum * normalZ;
+        }
+
+        // Friction opposes the tangential relative velocity, by at most
+        //   'friction' times the normal impulse
+        float tangentX = velocityX - normalVelocity * normalX;
+        float tangentY = velocityY - normalVelocity * normalY;
+        float tangentZ = velocityZ - normalVelocity * normalZ;
+        float tangentSpeed = (float) Math.sqrt(tangentX * tangentX
+                + tangentY * tangentY + tangentZ * tangentZ);
+        if (impulse > 0 && tangentSpeed > 0) {
+            float frictionImpulse = Math.min(tangentSpeed * dt / weightSum,
+                    friction * impulse);
+            moveX -= frictionImpulse * tangentX / tangentSpeed;
+            moveY -= frictionImpulse * tangentY / tangentSpeed;
+            moveZ -= frictionImpulse * tangentZ / tangentSpeed;
+        }
+
+        // Move the nodes, and change their velocities to match
+        for (int k = 4 * c; k < 4 * c + 4; k++) {
+            int i = contactNodes[k];
+            float scale = weights[k] * nodesInverseMass[i / 3];
+            nodes[i] += scale * moveX;
+            nodes[i + 1] += scale * moveY;
+            nodes[i + 2] += scale * moveZ;
+            velocities[i] += scale * (moveX / dt + stopX);
+            velocities[i + 1] += scale * (moveY / dt + stopY);
+            velocities[i + 2] += scale * (moveZ / dt + stopZ);
+        }
+    }
+
+}
@@ -0,0 +1,489 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Continuous collision detection between pairs of triangles. Nodes are taken
+ * to move in straight lines from their positions at the start of the step to
+ * those at the end, and for each vertex-face and edge-edge pair of features
+ * the times at which the four points become coplanar are found (the roots of
+ * a cubic in time). The earliest such time at which the features are also
+ * within 'thickness' of each other is the time of impact. Features whose
+ * swept boxes do not overlap are skipped before any cubic is solved.
+ *
+ * Times are fractions of the step (0 at the start, 1 at the end). Impacts
+ * are recorded in primitive arrays which are reused from step to step. If a
+ * 'ContactBuffer' is set, every impact (and every proximity found by
+ * 'FindProximities') is also added to it as a contact, with its normal
+ * pointing to the side the first feature was on at the start of the step
+ */
+public class ContinuousCollisionDetection {
+
+    public static final int vertexFace = 0; // Node 0 against face 1-2-3
+    public static final int edgeEdge = 1; // Edge 0-1 against edge 2-3
+
+    private static final int bisectionIterations = 40;
+
+    private float thickness;
+    private int[] triangleVertices; // Indices into 'nodes', three per triangle
+    private float[] previousNodes, nodes;
+
+    // Impacts found by the last call to 'FindImpacts'
+    private int[] impactType, impactNodes; // Four nodes per impact
+    private float[] impactTime;
+    private int nImpacts;
+    private float earliestImpact;
+
+    private double[] roots; // Times in [0, 1] found by 'CoplanarTimes'
+    private boolean sweep; // false to test the end of the step only
+
+    // The feature pair last found near: weights of its four nodes (giving
+    //   the separation of the features) and the unit normal between them
+    private double weight0, weight1, weight2, weight3;
+    private double normalX, normalY, normalZ;
+    private ContactBuffer contacts; // null if contacts are not wanted
+
+    public ContinuousCollisionDetection(int[] triangleVertices, float thickness) {
+        this.triangleVertices = triangleVertices;
+        this.thickness = thickness;
+        impactType = new int[64];
+        impactNodes = new int[4 * 64];
+        impactTime = new float[64];
+        roots = new double[4];
+    }
+
+    public void SetThickness(float thickness) {
+        this.thickness = thickness;
+    }
+
+    public float GetThickness() {
+        return thickness;
+    }
+
+    // Sets where contacts are added, or null to stop adding them
+    public void SetContactBuffer(ContactBuffer contacts) {
+        this.contacts = contacts;
+    }
+
+    // Finds the impacts between the features of each pair of triangles in
+    //   'pairs' as the nodes move from 'previousNodes' to 'nodes'. Triangles
+    //   sharing a vertex are not tested against each other at that vertex
+    public void FindImpacts(PairBuffer pairs, float[] previousNodes,
+            float[] nodes) {
+        this.previousNodes = previousNodes;
+        this.nodes = nodes;
+        sweep = true;
+        TestPairs(pairs);
+    }
+
+    // Adds a contact to the contact buffer for every feature pair of each
+    //   pair of triangles in 'pairs' that is within 'thickness' at 'nodes'.
+    //   No impacts are recorded
+    public void FindProximities(PairBuffer pairs, float[] nodes) {
+        previousNodes = nodes;
+        this.nodes = nodes;
+        sweep = false;
+        TestPairs(pairs);
+    }
+
+    private void TestPairs(PairBuffer pairs) {
+        nImpacts = 0;
+        earliestImpact = Float.POSITIVE_INFINITY;
+
+        for (int p = 0; p < pairs.Size(); p++) {
+            int a = 3 * pairs.GetFirst(p);
+            int b = 3 * pairs.GetSecond(p);
+
+            // Each vertex of one triangle against the face of the other
+            for (int i = 0; i < 3; i++) {
+                TestVertexFace(triangleVertices[a + i], triangleVertices[b],
+                        triangleVertices[b + 1], triangleVertices[b + 2]);
+                TestVertexFace(triangleVertices[b + i], triangleVertices[a],
+                        triangleVertices[a + 1], triangleVertices[a + 2]);
+            }
+
+            // Each edge of one triangle against each edge of the other
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 3; j++) {
+                    TestEdgeEdge(triangleVertices[a + i],
+                            triangleVertices[a + (i + 1) % 3],
+                            triangleVertices[b + j],
+                            triangleVertices[b + (j + 1) % 3]);
+                }
+            }
+        }
+    }
+
+    public int GetNumberOfImpacts() {
+        return nImpacts;
+    }
+
+    // Returns 'vertexFace' or 'edgeEdge'
+    public int GetImpactType(int impact) {
+        return impactType[impact];
+    }
+
+    // Returns the index into 'nodes' of node 'k' (0 to 3) of the impact
+    public int GetImpactNode(int impact, int k) {
+        return impactNodes[4 * impact + k];
+    }
+
+    // Returns the time of impact as a fraction of the step
+    public float GetImpactTime(int impact) {
+        return impactTime[impact];
+    }
+
+    // Returns the earliest time of impact found, or infinity if none was
+    public float GetEarliestImpact() {
+        return earliestImpact;
+    }
+
+    private void TestVertexFace(int vertex, int face0, int face1, int face2) {
+        if (vertex == face0 || vertex == face1 || vertex == face2
+                || !SweptBoxesOverlap(vertex, vertex, face0, face1, face2)) {
+            return;
+        }
+        int nRoots = EndOrCoplanarTimes(face0, face1, face2, vertex);
+        for (int r = 0; r < nRoots; r++) {
+            if (VertexNearFace(roots[r], vertex, face0, face1, face2)) {
+                AddImpact(vertexFace, vertex, face0, face1, face2, roots[r]);
+                return;
+            }
+        }
+    }
+
+    private void TestEdgeEdge(int edgeA0, int edgeA1, int edgeB0, int edgeB1) {
+        if (edgeA0 == edgeB0 || edgeA0 == edgeB1
+                || edgeA1 == edgeB0 || edgeA1 == edgeB1
+                || !SweptBoxesOverlap(edgeA0, edgeA1, edgeB0, edgeB1, edgeB1)) {
+            return;
+        }
+        int nRoots = EndOrCoplanarTimes(edgeA0, edgeA1, edgeB0, edgeB1);
+        for (int r = 0; r < nRoots; r++) {
+            if (EdgesNear(roots[r], edgeA0, edgeA1, edgeB0, edgeB1)) {
+                AddImpact(edgeEdge, edgeA0, edgeA1, edgeB0, edgeB1, roots[r]);
+                return;
+            }
+        }
+    }
+
+    // The times to test features at: the end of the step, or if sweeping,
+    //   the times at which the four nodes are coplanar
+    private int EndOrCoplanarTimes(int p0, int p1, int p2, int p3) {
+        if (sweep) {
+            return CoplanarTimes(p0, p1, p2, p3);
+        }
+        roots[0] = 1;
+        return 1;
+    }
+
+    // Records the feature pair last found near as an impact (when sweeping)
+    //   and as a contact (when a contact buffer is set)
+    private void AddImpact(int type, int node0, int node1, int node2,
+            int node3, double time) {
+        if (contacts != null) {
+            // Orient the normal from the second feature to the first as they
+            //   were at the start of the step, so a pair which has passed
+            //   through each other has a negative separation
+            double startX = weight0 * previousNodes[node0] + weight1 * previousNodes[node1]
+                    + weight2 * previousNodes[node2] + weight3 * previousNodes[node3];
+            double startY = weight0 * previousNodes[node0 + 1] + weight1 * previousNodes[node1 + 1]
+                    + weight2 * previousNodes[node2 + 1] + weight3 * previousNodes[node3 + 1];
+            double startZ = weight0 * previousNodes[node0 + 2] + weight1 * previousNodes[node1 + 2]
+                    + weight2 * previousNodes[node2 + 2] + weight3 * previousNodes[node3 + 2];
+            double sign = startX * normalX + startY * normalY + startZ * normalZ < 0 ? -1 : 1;
+            contacts.Add(node0, node1, node2, node3,
+                    (float) weight0, (float) weight1, (float) weight2, (float) weight3,
+                    (float) (sign * normalX), (float) (sign * normalY),
+                    (float) (sign * normalZ));
+        }
+        if (!sweep) {
+            return;
+        }
+
+        if (nImpacts == impactTime.length) {
+            int[] newType = new int[2 * nImpacts];
+            int[] newNodes = new int[8 * nImpacts];
+            float[] newTime = new float[2 * nImpacts];
+            System.arraycopy(impactType, 0, newType, 0, nImpacts);
+            System.arraycopy(impactNodes, 0, newNodes, 0, 4 * nImpacts);
+            System.arraycopy(impactTime, 0, newTime, 0, nImpacts);
+            impactType = newType;
+            impactNodes = newNodes;
+            impactTime = newTime;
+        }
+        impactType[nImpacts] = type;
+        impactNodes[4 * nImpacts] = node0;
+        impactNodes[4 * nImpacts + 1] = node1;
+        impactNodes[4 * nImpacts + 2] = node2;
+        impactNodes[4 * nImpacts + 3] = node3;
+        impactTime[nImpacts] = (float) time;
+        earliestImpact = Math.min(earliestImpact, (float) time);
+        nImpacts++;
+    }
+
+    // Whether the box swept by nodes 'a0' and 'a1' overlaps (within
+    //   'thickness') the box swept by nodes 'b0', 'b1' and 'b2'
+    private boolean SweptBoxesOverlap(int a0, int a1, int b0, int b1, int b2) {
+        for (int k = 0; k < 3; k++) {
+            float minA = Math.min(Math.min(previousNodes[a0 + k], nodes[a0 + k]),
+                    Math.min(previousNodes[a1 + k], nodes[a1 + k]));
+            float maxA = Math.max(Math.max(previousNodes[a0 + k], nodes[a0 + k]),
+                    Math.max(previousNodes[a1 + k], nodes[a1 + k]));
+            float minB = Math.min(Math.min(
+                    Math.min(previousNodes[b0 + k], nodes[b0 + k]),
+                    Math.min(previousNodes[b1 + k], nodes[b1 + k])),
+                    Math.min(previousNodes[b2 + k], nodes[b2 + k]));
+            float maxB = Math.max(Math.max(
+                    Math.max(previousNodes[b0 + k], nodes[b0 + k]),
+                    Math.max(previousNodes[b1 + k], nodes[b1 + k])),
+                    Math.max(previousNodes[b2 + k], nodes[b2 + k]));
+            if (minA > maxB + thickness || minB > maxA + thickness) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Fills 'roots' with the times in [0, 1] at which the four nodes are
+    //   coplanar, in increasing order, and returns how many there are. If the nodes are coplanar
+    //   throughout, the start and end of the step are returned
+    private int CoplanarTimes(int p0, int p1, int p2, int p3) {
+        // Edges from 'p0' at the start of the step and their change over it
+        double ax = previousNodes[p1] - previousNodes[p0];
+        double ay = previousNodes[p1 + 1] - previousNodes[p0 + 1];
+        double az = previousNodes[p1 + 2] - previousNodes[p0 + 2];
+        double bx = previousNodes[p2] - previousNodes[p0];
+        double by = previousNodes[p2 + 1] - previousNodes[p0 + 1];
+        double bz = previousNodes[p2 + 2] - previousNodes[p0 + 2];
+        double cx = previousNodes[p3] - previousNodes[p0];
+        double cy = previousNodes[p3 + 1] - previousNodes[p0 + 1];
+        double cz = previousNodes[p3 + 2] - previousNodes[p0 + 2];
+        double adx = nodes[p1] - nodes[p0] - ax;
+        double ady = nodes[p1 + 1] - nodes[p0 + 1] - ay;
+        double adz = nodes[p1 + 2] - nodes[p0 + 2] - az;
+        double bdx = nodes[p2] - nodes[p0] - bx;
+        double bdy = nodes[p2 + 1] - nodes[p0 + 1] - by;
+        double bdz = nodes[p2 + 2] - nodes[p0 + 2] - bz;
+        double cdx = nodes[p3] - nodes[p0] - cx;
+        double cdy = nodes[p3 + 1] - nodes[p0 + 1] - cy;
+        double cdz = nodes[p3 + 2] - nodes[p0 + 2] - cz;
+
+        // (a x b) . c, expanded in powers of time
+        double n0x = ay * bz - az * by;
+        double n0y = az * bx - ax * bz;
+        double n0z = ax * by - ay * bx;
+        double n1x = ay * bdz - az * bdy + ady * bz - adz * by;
+        double n1y = az * bdx - ax * bdz + adz * bx - adx * bz;
+        double n1z = ax * bdy - ay * bdx + adx * by - ady * bx;
+        double n2x = ady * bdz - adz * bdy;
+        double n2y = adz * bdx - adx * bdz;
+        double n2z = adx * bdy - ady * bdx;
+        double f0 = n0x * cx + n0y * cy + n0z * cz;
+        double f1 = n0x * cdx + n0y * cdy + n0z * cdz
+                + n1x * cx + n1y * cy + n1z * cz;
+        double f2 = n1x * cdx + n1y * cdy + n1z * cdz
+                + n2x * cx + n2y * cy + n2z * cz;
+        double f3 = n2x * cdx + n2y * cdy + n2z * cdz;
+
+        // Values this small (a thickness times an area) count as coplanar
+        double tolerance = thickness
+                * Math.sqrt(n0x * n0x + n0y * n0y + n0z * n0z);
+        double f1Value = f0 + f1 + f2 + f3;
+        if (Math.abs(f0) <= tolerance && Math.abs(f1Value) <= tolerance
+                && Math.abs(f1) + Math.abs(f2) + Math.abs(f3) <= tolerance) {
+            roots[0] = 0;
+            roots[1] = 1;
+            return 2;
+        }
+
+        // Split [0, 1] where the derivative vanishes so that the cubic is
+        //   monotonic on each piece, then bisect each piece that changes sign
+        double t0 = 0, t1 = 1, t2 = 1;
+        double qa = 3 * f3, qb = 2 * f2, qc = f1;
+        if (qa != 0) {
+            double discriminant = qb * qb - 4 * qa * qc;
+            if (discriminant > 0) {
+                double s = Math.sqrt(discriminant);
+                double r0 = (-qb - s) / (2 * qa), r1 = (-qb + s) / (2 * qa);
+                t1 = Clamp01(Math.min(r0, r1));
+                t2 = Clamp01(Math.max(r0, r1));
+            }
+        } else if (qb != 0) {
+            t1 = Clamp01(-qc / qb);
+        }
+
+        int nRoots = 0;
+        if (Math.abs(f0) <= tolerance) {
+            roots[nRoots++] = 0;
+        }
+        nRoots = RootIn(f0, f1, f2, f3, t0, t1, tolerance, nRoots);
+        nRoots = RootIn(f0, f1, f2, f3, t1, t2, tolerance, nRoots);
+        nRoots = RootIn(f0, f1, f2, f3, t2, 1, tolerance, nRoots);
+        return nRoots;
+    }
+
+    // Adds the root of the (monotonic) cubic on [low, high] to 'roots' if it
+    //   has one there, not counting a root at 'low' that was already added
+    private int RootIn(double f0, double f1, double f2, double f3,
+            double low, double high, double tolerance, int nRoots) {
+        if (high <= low || nRoots == roots.length) {
+            return nRoots;
+        }
+        double fLow = Cubic(f0, f1, f2, f3, low);
+        double fHigh = Cubic(f0, f1, f2, f3, high);
+        if (Math.abs(fLow) <= tolerance) {
+            return nRoots;
+        }
+        if (Math.abs(fHigh) <= tolerance) {
+            roots[nRoots++] = high;
+            return nRoots;
+        }
+        if ((fLow < 0) == (fHigh < 0)) {
+            return nRoots;
+        }
+        for (int i = 0; i < bisectionIterations; i++) {
+            double middle = 0.5 * (low + high);
+            double fMiddle = Cubic(f0, f1, f2, f3, middle);
+            if ((fMiddle < 0) == (fLow < 0)) {
+                low = middle;
+                fLow = fMiddle;
+            } else {
+                high = middle;
+            }
+        }
+        roots[nRoots++] = high;
+        return nRoots;
+    }
+
+    private static double Cubic(double f0, double f1, double f2, double f3,
+            double t) {
+        return ((f3 * t + f2) * t + f1) * t + f0;
+    }
+
+    private static double Clamp01(double t) {
+        return Math.max(0, Math.min(1, t));
+    }
+
+    // Position of coordinate 'k' of the node at 'nodes[i]' at time 't'
+    private double At(int i, int k, double t) {
+        return previousNodes[i + k] + t * (nodes[i + k] - previousNodes[i + k]);
+    }
+
+    // Whether the vertex lies within 'thickness' of the face at time 't'
+    private boolean VertexNearFace(double t, int vertex, int face0, int face1,
+            int face2) {
+        double px = At(vertex, 0, t), py = At(vertex, 1, t), pz = At(vertex, 2, t);
+        double ax = At(face0, 0, t), ay = At(face0, 1, t), az = At(face0, 2, t);
+        double abx = At(face1, 0, t) - ax, aby = At(face1, 1, t) - ay,
+                abz = At(face1, 2, t) - az;
+        double acx = At(face2, 0, t) - ax, acy = At(face2, 1, t) - ay,
+                acz = At(face2, 2, t) - az;
+        double apx = px - ax, apy = py - ay, apz = pz - az;
+
+        double nx = aby * acz - abz * acy;
+        double ny = abz * acx - abx * acz;
+        double nz = abx * acy - aby * acx;
+        double area2 = nx * nx + ny * ny + nz * nz;
+        if (area2 == 0) {
+            return false;
+        }
+        double distance = (apx * nx + apy * ny + apz * nz) / Math.sqrt(area2);
+        if (Math.abs(distance) > thickness) {
+            return false;
+        }
+
+        // Barycentric coordinates of the projection onto the face, allowing
+        //   'thickness' beyond the edges
+        double d00 = abx * abx + aby * aby + abz * abz;
+        double d01 = abx * acx + aby * acy + abz * acz;
+        double d11 = acx * acx + acy * acy + acz * acz;
+        double d20 = apx * abx + apy * aby + apz * abz;
+        double d21 = apx * acx + apy * acy + apz * acz;
+        double denominator = d00 * d11 - d01 * d01;
+        double v = (d11 * d20 - d01 * d21) / denominator;
+        double w = (d00 * d21 - d01 * d20) / denominator;
+        double slack = thickness / Math.sqrt(Math.max(d00, d11));
+        if (v < -slack || w < -slack || v + w > 1 + slack) {
+            return false;
+        }
+
+        weight0 = 1;
+        weight1 = -(1 - v - w);
+        weight2 = -v;
+        weight3 = -w;
+        double length = Math.sqrt(area2);
+        normalX = nx / length;
+        normalY = ny / length;
+        normalZ = nz / length;
+        return true;
+    }
+
+    // Whether the two edges pass within 'thickness' of each other at time 't'
+    private boolean EdgesNear(double t, int a0, int a1, int b0, int b1) {
+        double p1x = At(a0, 0, t), p1y = At(a0, 1, t), p1z = At(a0, 2, t);
+        double q1x = At(b0, 0, t), q1y = At(b0, 1, t), q1z = At(b0, 2, t);
+        double d1x = At(a1, 0, t) - p1x, d1y = At(a1, 1, t) - p1y,
+                d1z = At(a1, 2, t) - p1z;
+        double d2x = At(b1, 0, t) - q1x, d2y = At(b1, 1, t) - q1y,
+                d2z = At(b1, 2, t) - q1z;
+        double rx = p1x - q1x, ry = p1y - q1y, rz = p1z - q1z;
+        double a = d1x * d1x + d1y * d1y + d1z * d1z;
+        double e = d2x * d2x + d2y * d2y + d2z * d2z;
+        double f = d2x * rx + d2y * ry + d2z * rz;
+        if (a == 0 || e == 0) {
+            return false;
+        }
+
+        // Closest points of the two segments (parameters s and u)
+        double c = d1x * rx + d1y * ry + d1z * rz;
+        double b = d1x * d2x + d1y * d2y + d1z * d2z;
+        double denominator = a * e - b * b;
+        double s = denominator > 0 ? Clamp01((b * f - c * e) / denominator) : 0;
+        double u = (b * s + f) / e;
+        if (u < 0) {
+            u = 0;
+            s = Clamp01(-c / a);
+        } else if (u > 1) {
+            u = 1;
+            s = Clamp01((b - c) / a);
+        }
+
+        double x = p1x + d1x * s - (q1x + d2x * u);
+        double y = p1y + d1y * s - (q1y + d2y * u);
+        double z = p1z + d1z * s - (q1z + d2z * u);
+        double distance2 = x * x + y * y + z * z;
+        if (distance2 > thickness * thickness) {
+            return false;
+        }
+
+        weight0 = 1 - s;
+        weight1 = s;
+        weight2 = -(1 - u);
+        weight3 = -u;
+        if (distance2 < 1e-6 * thickness * thickness) {
+            // The edges touch, so the normal is across both of them
+            x = d1y * d2z - d1z * d2y;
+            y = d1z * d2x - d1x * d2z;
+            z = d1x * d2y - d1y * d2x;
+            distance2 = x * x + y * y + z * z;
+            if (distance2 == 0) {
+                return false;
+            }
+        }
+        double length = Math.sqrt(distance2);
+        normalX = x / length;
+        normalY = y / length;
+        normalZ = z / length;
+        return true;
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Writes frames to a directory as a numbered sequence of PNG files
+ * (frame_00000.png, frame_00001.png, ...). Encoding is done on a pool of
+ * background threads, so saving a frame costs the caller nothing but
+ * handing it over; the image must not be drawn on afterwards. Only a few
+ * frames per thread may wait to be encoded: once they are queued, the
+ * caller encodes the frame itself, so a capture slower than the display
+ * slows the display rather than filling memory with images.
+ *
+ * Must be used from one thread
+ */
+public class FrameCapture {
+
+    private static final int framesQueuedPerThread = 2;
+
+    private File directory;
+    private ThreadPoolExecutor encoders;
+    private int nFrames;
+
+    public FrameCapture(File directory, int nThreads) {
+        this.directory = directory;
+        directory.mkdirs();
+        nThreads = Math.max(nThreads, 1);
+        encoders = new ThreadPoolExecutor(nThreads, nThreads,
+                0, TimeUnit.NANOSECONDS,
+                new ArrayBlockingQueue<Runnable>(framesQueuedPerThread * nThreads),
+                new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Frame encoder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    // Queues the image to be written as the next frame (or writes it now if
+    //   the queue is full), returning its number
+    public int Save(final BufferedImage image) {
+        final File file = new File(directory,
+                String.format("frame_%05d.png", nFrames));
+        encoders.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ImageIO.write(image, "png", file);
+                } catch (IOException ex) {
+                    Logger.getLogger(FrameCapture.class.getName()).log(Level.SEVERE, null, ex);
+                }
+            }
+        });
+        return nFrames++;
+    }
+
+    public int GetNumberOfFrames() {
+        return nFrames;
+    }
+
+    public File GetDirectory() {
+        return directory;
+    }
+
+    // Waits for the frames queued to be written, then stops the encoders
+    public void Finish() {
+        encoders.shutdown();
+        try {
+            encoders.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
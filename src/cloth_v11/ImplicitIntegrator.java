@@ -0,0 +1,367 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Backward Euler velocity update (Baraff and Witkin). Each step solves
+ *   (I - dt * dF/dv - dt^2 * dF/dx) dv = dt * (F + dt * dF/dx * v)
+ * for the velocity change 'dv', where nodes have unit mass as in the explicit
+ * update. dF/dx is the spring Jacobian, assembled into a sparse matrix of 3x3
+ * blocks (one row of blocks per node), and the system is solved by conjugate
+ * gradients with a Jacobi preconditioner, starting from the previous step's
+ * 'dv'. Bending forces are left out of the Jacobian and so stay explicit
+ */
+public class ImplicitIntegrator {
+
+    private SpringTable springTable;
+    private float[] nodesDragCoefficient; // dF/dv = -drag * I for each node
+    private boolean[] nodesPinned; // Pinned nodes are held at dv = 0
+    private int nNodes, nData;
+
+    // Sparse block matrix, compressed by rows: the blocks of row 'node' are
+    //   'rowStart[node]' to 'rowStart[node + 1] - 1', with block b in
+    //   column 'blockColumn[b]' and values 'blocks[9 * b]' to
+    //   'blocks[9 * b + 8]' (row major)
+    private int[] rowStart, blockColumn;
+    private float[] blocks;
+    private int[] diagonalBlock, // Block index of each node's diagonal block
+            springsBlockThisThat, // Block index of (this, that) for each spring
+            springsBlockThatThis; // Block index of (that, this) for each spring
+
+    // Solver vectors (3 * nNodes each)
+    private float[] velocityChange, // The solution; kept as the next initial guess
+            rightHandSide, residual, direction, product, preconditioner;
+
+    private float[] jacobian; // 3x3 spring Jacobian (row major) being assembled
+
+    private int maxIterations;
+    private float tolerance; // Relative to the size of the right hand side
+    private int lastIterations;
+
+    // Parallelism (matrix-vector products split over rows of blocks)
+    private static final int rowGrain = 512;
+    private WorkerPool workerPool;
+    private WorkerPool.RangeBody multiplyBody;
+    private float[] multiplyIn, multiplyOut;
+
+    public ImplicitIntegrator(SpringTable springTable, int nNodes,
+            float[] nodesDragCoefficient, boolean[] nodesPinned) {
+        this.springTable = springTable;
+        this.nNodes = nNodes;
+        this.nData = 3 * nNodes;
+        this.nodesDragCoefficient = nodesDragCoefficient;
+        this.nodesPinned = nodesPinned;
+
+        maxIterations = 100;
+        tolerance = 1e-4f;
+
+        velocityChange = new float[nData];
+        rightHandSide = new float[nData];
+        residual = new float[nData];
+        direction = new float[nData];
+        product = new float[nData];
+        preconditioner = new float[nData];
+        jacobian = new float[9];
+
+        BuildStructure();
+
+        workerPool = new WorkerPool(1);
+        multiplyBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                Multiply(multiplyIn, multiplyOut, start, end);
+            }
+        };
+    }
+
+    public void SetWorkerPool(WorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    public void SetMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    public void SetTolerance(float tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    // Returns the number of conjugate gradient iterations of the last solve
+    public int GetLastIterations() {
+        return lastIterations;
+    }
+
+    // Returns |b - A dv| / |b| for the system and solution of the last solve,
+    //   recomputed from the matrix rather than taken from the iterations
+    //   (pinned nodes, held at dv = 0, are left out)
+    double GetRelativeResidual() {
+        MultiplyAll(velocityChange, product);
+        for (int i = 0; i < nData; i++) {
+            product[i] = rightHandSide[i] - product[i];
+        }
+        Filter(product);
+        double rightHandSideDot = Dot(rightHandSide, rightHandSide, false);
+        return rightHandSideDot == 0 ? 0
+                : Math.sqrt(Dot(product, product, false) / rightHandSideDot);
+    }
+
+    public int GetMaxIterations() {
+        return maxIterations;
+    }
+
+    public float GetTolerance() {
+        return tolerance;
+    }
+
+    // Determines the sparsity pattern: a diagonal block for each node and a
+    //   block for each pair of nodes joined by a spring
+    private void BuildStructure() {
+        int nSprings = springTable.GetNumberOfSprings();
+
+        // Count the blocks in each row
+        int[] rowLength = new int[nNodes];
+        for (int node = 0; node < nNodes; node++) {
+            rowLength[node] = 1;
+        }
+        for (int s = 0; s < nSprings; s++) {
+            rowLength[springTable.springsThis[s] / 3]++;
+            rowLength[springTable.springsThat[s] / 3]++;
+        }
+
+        rowStart = new int[nNodes + 1];
+        for (int node = 0; node < nNodes; node++) {
+            rowStart[node + 1] = rowStart[node] + rowLength[node];
+        }
+        blockColumn = new int[rowStart[nNodes]];
+        blocks = new float[9 * rowStart[nNodes]];
+
+        // Fill the columns; the diagonal block comes first in its row
+        int[] next = new int[nNodes];
+        diagonalBlock = new int[nNodes];
+        for (int node = 0; node < nNodes; node++) {
+            diagonalBlock[node] = rowStart[node];
+            blockColumn[rowStart[node]] = node;
+            next[node] = rowStart[node] + 1;
+        }
+
+        springsBlockThisThat = new int[nSprings];
+        springsBlockThatThis = new int[nSprings];
+        for (int s = 0; s < nSprings; s++) {
+            int nodeThis = springTable.springsThis[s] / 3;
+            int nodeThat = springTable.springsThat[s] / 3;
+
+            springsBlockThisThat[s] = next[nodeThis];
+            blockColumn[next[nodeThis]++] = nodeThat;
+
+            springsBlockThatThis[s] = next[nodeThat];
+            blockColumn[next[nodeThat]++] = nodeThis;
+        }
+    }
+
+    // Replaces 'velocities' with the backward Euler velocities given the
+    //   current positions and the total forces on each node
+    public void UpdateVelocities(float[] nodes, float[] velocities,
+            float[] forces, float dt) {
+        Assemble(nodes, velocities, forces, dt);
+
+        Solve();
+
+        for (int i = 0; i < nData; i++) {
+            velocities[i] += velocityChange[i];
+        }
+    }
+
+    // Writes 'I - dt * dF/dv - dt^2 * dF/dx' into 'blocks' and
+    //   'dt * (F + dt * dF/dx * v)' into 'rightHandSide'
+    private void Assemble(float[] nodes, float[] velocities,
+            float[] forces, float dt) {
+        Arit.FillWithZeros(blocks);
+        Arit.FillWithZeros(product); // Used to accumulate dF/dx * v
+
+        for (int node = 0; node < nNodes; node++) {
+            int diagonal = 9 * diagonalBlock[node];
+            float damping = 1 + dt * nodesDragCoefficient[node];
+            blocks[diagonal] = damping;
+            blocks[diagonal + 4] = damping;
+            blocks[diagonal + 8] = damping;
+        }
+
+        float dt2 = dt * dt;
+        int nSprings = springTable.GetNumberOfSprings();
+        for (int s = 0; s < nSprings; s++) {
+            int nodeThisIndex = springTable.springsThis[s];
+            int nodeThatIndex = springTable.springsThat[s];
+            float x = nodes[nodeThisIndex] - nodes[nodeThatIndex];
+            float y = nodes[nodeThisIndex + 1] - nodes[nodeThatIndex + 1];
+            float z = nodes[nodeThisIndex + 2] - nodes[nodeThatIndex + 2];
+            float distance = (float) Math.sqrt(
+                    (double) x * x + (double) y * y + (double) z * z);
+            if (distance == 0) {
+                continue;
+            }
+            x /= distance;
+            y /= distance;
+            z /= distance;
+
+            // dF_this/dx_this = -k (n n^T + max(1 - L / d, 0) (I - n n^T)),
+            //   the same scaling of the spring constant as the explicit force
+            float k = springTable.springsConstant[s] / 0.2f;
+            float transverse = Math.max(
+                    1 - springTable.springsStableDistance[s] / distance, 0);
+            jacobian[0] = -k * (x * x + transverse * (1 - x * x));
+            jacobian[1] = -k * (x * y - transverse * x * y);
+            jacobian[2] = -k * (x * z - transverse * x * z);
+            jacobian[3] = jacobian[1];
+            jacobian[4] = -k * (y * y + transverse * (1 - y * y));
+            jacobian[5] = -k * (y * z - transverse * y * z);
+            jacobian[6] = jacobian[2];
+            jacobian[7] = jacobian[5];
+            jacobian[8] = -k * (z * z + transverse * (1 - z * z));
+
+            int diagonalThis = 9 * diagonalBlock[nodeThisIndex / 3];
+            int diagonalThat = 9 * diagonalBlock[nodeThatIndex / 3];
+            int offDiagonalThisThat = 9 * springsBlockThisThat[s];
+            int offDiagonalThatThis = 9 * springsBlockThatThis[s];
+            for (int e = 0; e < 9; e++) {
+                float term = dt2 * jacobian[e];
+                blocks[diagonalThis + e] -= term;
+                blocks[diagonalThat + e] -= term;
+                blocks[offDiagonalThisThat + e] += term;
+                blocks[offDiagonalThatThis + e] += term;
+            }
+
+            // dF/dx * v for this spring: J (v_this - v_that) on 'this' and the
+            //   negative on 'that'
+            float vx = velocities[nodeThisIndex] - velocities[nodeThatIndex];
+            float vy = velocities[nodeThisIndex + 1] - velocities[nodeThatIndex + 1];
+            float vz = velocities[nodeThisIndex + 2] - velocities[nodeThatIndex + 2];
+            for (int row = 0; row < 3; row++) {
+                float jv = jacobian[3 * row] * vx + jacobian[3 * row + 1] * vy
+                        + jacobian[3 * row + 2] * vz;
+                product[nodeThisIndex + row] += jv;
+                product[nodeThatIndex + row] -= jv;
+            }
+        }
+
+        for (int i = 0; i < nData; i++) {
+            rightHandSide[i] = dt * (forces[i] + dt * product[i]);
+        }
+
+        // Jacobi preconditioner from the diagonal of the matrix
+        for (int node = 0; node < nNodes; node++) {
+            int diagonal = 9 * diagonalBlock[node];
+            preconditioner[3 * node] = 1 / blocks[diagonal];
+            preconditioner[3 * node + 1] = 1 / blocks[diagonal + 4];
+            preconditioner[3 * node + 2] = 1 / blocks[diagonal + 8];
+        }
+    }
+
+    // Preconditioned conjugate gradients on the assembled system, with pinned
+    //   nodes filtered out of every residual and search direction
+    private void Solve() {
+        Filter(velocityChange);
+
+        MultiplyAll(velocityChange, product);
+        for (int i = 0; i < nData; i++) {
+            residual[i] = rightHandSide[i] - product[i];
+        }
+        Filter(residual);
+
+        for (int i = 0; i < nData; i++) {
+            direction[i] = preconditioner[i] * residual[i];
+        }
+        Filter(direction);
+
+        double residualDotZ = Dot(residual, residual, true);
+        double target = tolerance * tolerance
+                * Dot(rightHandSide, rightHandSide, false);
+
+        lastIterations = 0;
+        while (lastIterations < maxIterations
+                && Dot(residual, residual, false) > target) {
+            MultiplyAll(direction, product);
+            Filter(product);
+
+            double directionDotProduct = Dot(direction, product, false);
+            if (directionDotProduct <= 0) {
+                break;
+            }
+            float alpha = (float) (residualDotZ / directionDotProduct);
+            for (int i = 0; i < nData; i++) {
+                velocityChange[i] += alpha * direction[i];
+                residual[i] -= alpha * product[i];
+            }
+
+            double newResidualDotZ = Dot(residual, residual, true);
+            float beta = (float) (newResidualDotZ / residualDotZ);
+            residualDotZ = newResidualDotZ;
+            for (int i = 0; i < nData; i++) {
+                direction[i] = preconditioner[i] * residual[i]
+                        + beta * direction[i];
+            }
+            Filter(direction);
+
+            lastIterations++;
+        }
+    }
+
+    // Returns u . v, or u . (P v) when 'preconditioned'
+    private double Dot(float[] u, float[] v, boolean preconditioned) {
+        double sum = 0;
+        if (preconditioned) {
+            for (int i = 0; i < nData; i++) {
+                sum += (double) u[i] * preconditioner[i] * v[i];
+            }
+        } else {
+            for (int i = 0; i < nData; i++) {
+                sum += (double) u[i] * v[i];
+            }
+        }
+        return sum;
+    }
+
+    // Zeroes the entries of pinned nodes
+    private void Filter(float[] vector) {
+        for (int node = 0; node < nNodes; node++) {
+            if (nodesPinned[node]) {
+                vector[3 * node] = 0;
+                vector[3 * node + 1] = 0;
+                vector[3 * node + 2] = 0;
+            }
+        }
+    }
+
+    // out = A in
+    private void MultiplyAll(float[] in, float[] out) {
+        multiplyIn = in;
+        multiplyOut = out;
+        workerPool.ForEachChunk(0, nNodes, rowGrain, multiplyBody);
+    }
+
+    // out = A in, for rows of blocks 'start' to 'end - 1'
+    private void Multiply(float[] in, float[] out, int start, int end) {
+        for (int node = start; node < end; node++) {
+            float sumX = 0, sumY = 0, sumZ = 0;
+            for (int b = rowStart[node]; b < rowStart[node + 1]; b++) {
+                int block = 9 * b;
+                int column = 3 * blockColumn[b];
+                float x = in[column], y = in[column + 1], z = in[column + 2];
+                sumX += blocks[block] * x + blocks[block + 1] * y + blocks[block + 2] * z;
+                sumY += blocks[block + 3] * x + blocks[block + 4] * y + blocks[block + 5] * z;
+                sumZ += blocks[block + 6] * x + blocks[block + 7] * y + blocks[block + 8] * z;
+            }
+            out[3 * node] = sumX;
+            out[3 * node + 1] = sumY;
+            out[3 * node + 2] = sumZ;
+        }
+    }
+
+}
@@ -27,7 +27,7 @@ import javax.swing.Timer;
  *
  * @author Jack Reardon
  * @created Jun 30, 2014
- * @edited Jun 30, 2014
+ * @edited Oct 17, 2026
  */
 public class InteractionHandler extends JFrame implements ActionListener, KeyListener, MouseWheelListener {
 
@@ -41,8 +41,8 @@ public class InteractionHandler extends JFrame implements ActionListener, KeyLis
 
     // Sensitivity to user inputs
     private float sensitivity = 0.2f;
-    private Timer calculationTimer, visualTimer;
-    private static final int calculationTimerFrequency = 3, visualTimerFrequency = 100;
+    private Timer visualTimer;
+    private static final int visualTimerFrequency = 100;
 
     public InteractionHandler(String title, Simulation simulationReference) {
         super(title);
@@ -150,10 +150,9 @@ public class InteractionHandler extends JFrame implements ActionListener, KeyLis
         return sensitivity;
     }
 
+    // Physics is stepped by the simulation's scheduler; this only drives the
+    //   visuals (on the Swing thread)
     public void Run() {
-        calculationTimer = new Timer(calculationTimerFrequency, this);
-        calculationTimer.start();
-
         visualTimer = new Timer(visualTimerFrequency, this);
         visualTimer.start();
     }
@@ -197,13 +196,13 @@ public class InteractionHandler extends JFrame implements ActionListener, KeyLis
                     // Revert camera
                     simulationReference.AdjustCameraPosition('0');
                     break;
-                case 'c': // 'c' key
-                    // Screen capture 'c'
-                    // TODO
+                case 67: // 'c' key
+                    // Start/stop capturing frames
+                    simulationReference.ToggleCapture();
                     break;
                 case 32: // space key
                     // Pause/start the simulation
-                    // TODO
+                    simulationReference.TogglePause();
                     break;
                 case 83: // 's' key
                     // Set the camera position
@@ -224,10 +223,6 @@ public class InteractionHandler extends JFrame implements ActionListener, KeyLis
 
     @Override
     public void actionPerformed(ActionEvent e) {
-        if ((calculationTimer != null) && (e.getSource() == calculationTimer)) {
-            simulationReference.Update();
-        }
-
         if ((visualTimer != null) && (e.getSource() == visualTimer)) {
             simulationReference.UpdateVisual();
         }
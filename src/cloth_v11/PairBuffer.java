@@ -0,0 +1,76 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * A growable list of pairs of ints (candidate triangle pairs) kept in two
+ * primitive arrays. Clearing keeps the storage, so a buffer reused every
+ * step stops allocating once it has grown to the largest step's size
+ */
+public class PairBuffer {
+
+    private int[] first, second;
+    private int nPairs;
+
+    public PairBuffer() {
+        this(64);
+    }
+
+    public PairBuffer(int capacity) {
+        first = new int[Math.max(capacity, 1)];
+        second = new int[first.length];
+    }
+
+    public void Clear() {
+        nPairs = 0;
+    }
+
+    public void Add(int a, int b) {
+        if (nPairs == first.length) {
+            Grow(2 * first.length);
+        }
+        first[nPairs] = a;
+        second[nPairs] = b;
+        nPairs++;
+    }
+
+    // Appends all of the pairs in 'other'
+    public void AddAll(PairBuffer other) {
+        if (nPairs + other.nPairs > first.length) {
+            Grow(Math.max(2 * first.length, nPairs + other.nPairs));
+        }
+        System.arraycopy(other.first, 0, first, nPairs, other.nPairs);
+        System.arraycopy(other.second, 0, second, nPairs, other.nPairs);
+        nPairs += other.nPairs;
+    }
+
+    public int Size() {
+        return nPairs;
+    }
+
+    public int GetFirst(int pair) {
+        return first[pair];
+    }
+
+    public int GetSecond(int pair) {
+        return second[pair];
+    }
+
+    private void Grow(int capacity) {
+        int[] newFirst = new int[capacity];
+        int[] newSecond = new int[capacity];
+        System.arraycopy(first, 0, newFirst, 0, nPairs);
+        System.arraycopy(second, 0, newSecond, 0, nPairs);
+        first = newFirst;
+        second = newSecond;
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Candidate pairs of triangles kept from step to step: an open-addressed set
+ * of pairs packed into longs (lower triangle in the high half), each with
+ * the last step at which it was known to be a candidate. A pair stays a
+ * candidate without being looked at again for as long as neither of its
+ * triangles moves (see 'CollectValid'); one which has stopped being a
+ * candidate is evicted once it has been stale for 'staleSteps' steps
+ */
+public class PairCache {
+
+    private static final long empty = -1, removed = -2;
+
+    private long[] keys;
+    private int[] lastValid; // Step at which each pair was last a candidate
+    private int mask;
+    private int nUsed; // Slots holding a pair or a removed marker
+    private int nPairs;
+    private int step;
+    private int staleSteps;
+
+    public PairCache(int capacity) {
+        Allocate(Math.max(16, Integer.highestOneBit(Math.max(capacity, 1)) * 4));
+        staleSteps = 8;
+    }
+
+    // Sets how many steps a pair may stop being a candidate for before it
+    //   is forgotten
+    public void SetStaleSteps(int staleSteps) {
+        this.staleSteps = staleSteps;
+    }
+
+    public int GetStaleSteps() {
+        return staleSteps;
+    }
+
+    public void Clear() {
+        Arrays.fill(keys, empty);
+        nUsed = 0;
+        nPairs = 0;
+    }
+
+    // Starts the next step, returning its number
+    public int NextStep() {
+        return ++step;
+    }
+
+    public int GetStep() {
+        return step;
+    }
+
+    public int Size() {
+        return nPairs;
+    }
+
+    // Records that triangles 'a' and 'b' are a candidate pair this step
+    public void Confirm(int a, int b) {
+        long key = a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+        int slot = Hash(key) & mask;
+        int free = -1;
+        while (keys[slot] != empty) {
+            if (keys[slot] == key) {
+                lastValid[slot] = step;
+                return;
+            }
+            if (keys[slot] == removed && free < 0) {
+                free = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (free < 0) {
+            free = slot;
+            nUsed++;
+        }
+        keys[free] = key;
+        lastValid[free] = step;
+        nPairs++;
+        if (2 * nUsed > keys.length) {
+            Rehash();
+        }
+    }
+
+    // Fills 'pairs' with this step's candidates: the pairs confirmed this
+    //   step, and those which were candidates last step with neither
+    //   triangle having moved since ('trianglesMoved' holds the step at which
+    //   each triangle last moved). The rest are stale, and are evicted once
+    //   they have been for more than 'staleSteps'
+    public void CollectValid(int[] trianglesMoved, PairBuffer pairs) {
+        pairs.Clear();
+        for (int slot = 0; slot < keys.length; slot++) {
+            long key = keys[slot];
+            if (key < 0) {
+                continue;
+            }
+            int a = (int) (key >>> 32), b = (int) key;
+            if (lastValid[slot] == step - 1
+                    && trianglesMoved[a] != step && trianglesMoved[b] != step) {
+                lastValid[slot] = step;
+            }
+            if (lastValid[slot] == step) {
+                pairs.Add(a, b);
+            } else if (step - lastValid[slot] > staleSteps) {
+                keys[slot] = removed;
+                nPairs--;
+            }
+        }
+    }
+
+    // Rebuilds the table without its removed markers, at least twice the
+    //   size of what it holds
+    private void Rehash() {
+        long[] oldKeys = keys;
+        int[] oldLastValid = lastValid;
+        Allocate(Math.max(16, Integer.highestOneBit(Math.max(nPairs, 1)) * 4));
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] >= 0) {
+                int newSlot = Hash(oldKeys[slot]) & mask;
+                while (keys[newSlot] != empty) {
+                    newSlot = (newSlot + 1) & mask;
+                }
+                keys[newSlot] = oldKeys[slot];
+                lastValid[newSlot] = oldLastValid[slot];
+                nUsed++;
+            }
+        }
+    }
+
+    // 'size' must be a power of two
+    private void Allocate(int size) {
+        keys = new long[size];
+        Arrays.fill(keys, empty);
+        lastValid = new int[size];
+        mask = size - 1;
+        nUsed = 0;
+    }
+
+    private static int Hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+}
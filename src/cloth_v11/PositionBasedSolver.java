@@ -0,0 +1,205 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Extended position based dynamics (XPBD). Springs of the 'SpringTable'
+ * become distance constraints, and each bending triple becomes a distance
+ * constraint between its two outer nodes, all with a compliance (inverse
+ * stiffness) so that the result does not depend on the iteration count. The
+ * constraints are projected by Gauss-Seidel iterations, one colour class at a
+ * time so that a class can be split across threads. Pinned nodes have zero
+ * inverse mass. Stable for any time step and a fixed number of iterations
+ */
+public class PositionBasedSolver {
+
+    private SpringTable springTable;
+    private float[] nodesDragCoefficient;
+    private float[] nodesInverseMass; // Zero for pinned nodes
+    private int nNodes, nData;
+
+    private float[] previousNodes; // Positions at the start of the step
+    private float[] springsCompliance, springsLambda;
+    private float[] bendingStableDistance, bendingCompliance, bendingLambda;
+
+    private int iterations;
+    private float alphaScale; // 1 / dt^2 for the step being solved
+
+    // Parallelism
+    private static final int constraintGrain = 1024;
+    private WorkerPool workerPool;
+    private WorkerPool.RangeBody springsBody, bendingBody;
+    private float[] nodes; // Positions being solved
+
+    public PositionBasedSolver(SpringTable springTable, int nNodes,
+            float[] nodesDragCoefficient, boolean[] nodesPinned) {
+        this.springTable = springTable;
+        this.nodesDragCoefficient = nodesDragCoefficient;
+        this.nNodes = nNodes;
+        nData = 3 * nNodes;
+
+        iterations = 10;
+
+        nodesInverseMass = new float[nNodes];
+        for (int node = 0; node < nNodes; node++) {
+            // Unit mass, as in the force based integrators
+            nodesInverseMass[node] = nodesPinned[node] ? 0 : 1;
+        }
+
+        previousNodes = new float[nData];
+
+        // Compliance is the inverse of the stiffness the explicit forces use
+        int nSprings = springTable.GetNumberOfSprings();
+        springsCompliance = new float[nSprings];
+        springsLambda = new float[nSprings];
+        for (int s = 0; s < nSprings; s++) {
+            springsCompliance[s] = 0.2f / springTable.springsConstant[s];
+        }
+
+        // Bending constraints keep the outer nodes of each triple at their
+        //   rest separation (that of the flat cloth, whatever its shape when
+        //   this integrator is selected)
+        int nBending = springTable.GetNumberOfBending();
+        bendingStableDistance = springTable.bendingStableDistance;
+        bendingCompliance = new float[nBending];
+        bendingLambda = new float[nBending];
+        for (int b = 0; b < nBending; b++) {
+            bendingCompliance[b] = 0.2f / springTable.bendingConstant[b];
+        }
+
+        workerPool = new WorkerPool(1);
+        springsBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                ProjectSprings(start, end);
+            }
+        };
+        bendingBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                ProjectBending(start, end);
+            }
+        };
+    }
+
+    public void SetWorkerPool(WorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    // Sets the number of constraint iterations per step
+    public void SetIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    public int GetIterations() {
+        return iterations;
+    }
+
+    // Advances 'nodes' and 'velocities' by one step of 'dt' under gravity
+    //   (an acceleration in y), drag and the constraints
+    public void Step(float[] nodes, float[] velocities, float dt,
+            float gravity) {
+        this.nodes = nodes;
+        System.arraycopy(nodes, 0, previousNodes, 0, nData);
+
+        // Predict positions from the external forces; drag is applied
+        //   implicitly so it is stable for any time step
+        for (int node = 0; node < nNodes; node++) {
+            if (nodesInverseMass[node] == 0) {
+                continue;
+            }
+            int i = 3 * node;
+            float dragFactor = 1 / (1 + dt * nodesDragCoefficient[node]);
+            velocities[i] = velocities[i] * dragFactor;
+            velocities[i + 1] = (velocities[i + 1] + dt * gravity) * dragFactor;
+            velocities[i + 2] = velocities[i + 2] * dragFactor;
+
+            nodes[i] += dt * velocities[i];
+            nodes[i + 1] += dt * velocities[i + 1];
+            nodes[i + 2] += dt * velocities[i + 2];
+        }
+
+        Arit.FillWithZeros(springsLambda);
+        Arit.FillWithZeros(bendingLambda);
+        alphaScale = 1 / (dt * dt);
+
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            for (int colour = 0; colour < springTable.GetNumberOfSpringColours(); colour++) {
+                workerPool.ForEachChunk(springTable.springsColourOffsets[colour],
+                        springTable.springsColourOffsets[colour + 1],
+                        constraintGrain, springsBody);
+            }
+            for (int colour = 0; colour < springTable.GetNumberOfBendingColours(); colour++) {
+                workerPool.ForEachChunk(springTable.bendingColourOffsets[colour],
+                        springTable.bendingColourOffsets[colour + 1],
+                        constraintGrain, bendingBody);
+            }
+        }
+
+        // The velocity is whatever moved the nodes to their solved positions
+        for (int i = 0; i < nData; i++) {
+            velocities[i] = (nodes[i] - previousNodes[i]) / dt;
+        }
+    }
+
+    // Projects the spring distance constraints 'start' to 'end - 1'
+    private void ProjectSprings(int start, int end) {
+        for (int s = start; s < end; s++) {
+            springsLambda[s] += ProjectDistance(
+                    springTable.springsThis[s], springTable.springsThat[s],
+                    springTable.springsStableDistance[s],
+                    springsCompliance[s], springsLambda[s]);
+        }
+    }
+
+    // Projects the bending constraints 'start' to 'end - 1'
+    private void ProjectBending(int start, int end) {
+        for (int b = start; b < end; b++) {
+            bendingLambda[b] += ProjectDistance(
+                    springTable.bendingLeft[b], springTable.bendingRight[b],
+                    bendingStableDistance[b],
+                    bendingCompliance[b], bendingLambda[b]);
+        }
+    }
+
+    // Moves the nodes at 'nodes' indices 'i' and 'j' towards 'stableDistance'
+    //   apart and returns the change in the constraint's multiplier
+    private float ProjectDistance(int i, int j, float stableDistance,
+            float compliance, float lambda) {
+        float inverseMassI = nodesInverseMass[i / 3];
+        float inverseMassJ = nodesInverseMass[j / 3];
+        float x = nodes[i] - nodes[j];
+        float y = nodes[i + 1] - nodes[j + 1];
+        float z = nodes[i + 2] - nodes[j + 2];
+        float distance = (float) Math.sqrt(
+                (double) x * x + (double) y * y + (double) z * z);
+        float alpha = compliance * alphaScale;
+        float weight = inverseMassI + inverseMassJ + alpha;
+        if (distance == 0 || weight == 0) {
+            return 0;
+        }
+
+        float constraint = distance - stableDistance;
+        float deltaLambda = (-constraint - alpha * lambda) / weight;
+        float scale = deltaLambda / distance;
+
+        nodes[i] += inverseMassI * scale * x;
+        nodes[i + 1] += inverseMassI * scale * y;
+        nodes[i + 2] += inverseMassI * scale * z;
+
+        nodes[j] -= inverseMassJ * scale * x;
+        nodes[j + 1] -= inverseMassJ * scale * y;
+        nodes[j + 2] -= inverseMassJ * scale * z;
+
+        return deltaLambda;
+    }
+
+}
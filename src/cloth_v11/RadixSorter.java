@@ -0,0 +1,119 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Least significant digit radix sort of float keys, carrying along the data
+ * ordered by them. Each key's bits are flipped so that they order as
+ * unsigned integers the way the floats order (all bits of a negative, just
+ * the sign bit of a positive), then sorted a byte at a time; bytes all keys
+ * share are skipped. Linear time whatever the starting order, so it is used
+ * from cold and whenever 'WorthSorting' finds the keys too disordered for an
+ * insertion sort. Holds its own scratch arrays, so one sorter per thread
+ */
+public class RadixSorter {
+
+    private static final int digitBits = 8;
+    private static final int nBuckets = 1 << digitBits;
+
+    private int[] bits, bitsScratch, dataScratch;
+    private int[] counts;
+
+    public RadixSorter(int n) {
+        bits = new int[n];
+        bitsScratch = new int[n];
+        dataScratch = new int[n];
+        counts = new int[nBuckets];
+    }
+
+    // Sorts 'keys' into increasing order, moving the elements of 'data'
+    //   alike, and leaves 'otherOrder[data[i]] == i'. Stable
+    public void Sort(int[] data, float[] keys, int[] otherOrder) {
+        int n = keys.length;
+        if (bits.length < n) {
+            bits = new int[n];
+            bitsScratch = new int[n];
+            dataScratch = new int[n];
+        }
+        for (int i = 0; i < n; i++) {
+            int b = Float.floatToRawIntBits(keys[i]);
+            bits[i] = b ^ ((b >> 31) | 0x80000000);
+        }
+
+        int[] fromBits = bits, toBits = bitsScratch;
+        int[] fromData = data, toData = dataScratch;
+        for (int shift = 0; shift < 32; shift += digitBits) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[(fromBits[i] >>> shift) & (nBuckets - 1)]++;
+            }
+            if (n == 0 || counts[(fromBits[0] >>> shift) & (nBuckets - 1)] == n) {
+                // Every key has the same digit here
+                continue;
+            }
+            int offset = 0;
+            for (int digit = 0; digit < nBuckets; digit++) {
+                int count = counts[digit];
+                counts[digit] = offset;
+                offset += count;
+            }
+            for (int i = 0; i < n; i++) {
+                int to = counts[(fromBits[i] >>> shift) & (nBuckets - 1)]++;
+                toBits[to] = fromBits[i];
+                toData[to] = fromData[i];
+            }
+            int[] swap = fromBits;
+            fromBits = toBits;
+            toBits = swap;
+            swap = fromData;
+            fromData = toData;
+            toData = swap;
+        }
+
+        for (int i = 0; i < n; i++) {
+            int b = fromBits[i];
+            keys[i] = Float.intBitsToFloat(b ^ ((~b >> 31) | 0x80000000));
+            data[i] = fromData[i];
+            otherOrder[data[i]] = i;
+        }
+    }
+
+    // Whether sorting 'keys' this way would be quicker than insertion
+    //   sorting them. The insertion sort's work is estimated from the total
+    //   of the drops between successive keys over the mean gap between keys
+    //   (about how many places the keys out of order must move); the radix
+    //   sort's is a few passes over the keys
+    public static boolean WorthSorting(float[] keys) {
+        int n = keys.length;
+        if (n < 2) {
+            return false;
+        }
+        float min = keys[0], max = keys[0];
+        double drops = 0;
+        for (int i = 1; i < n; i++) {
+            float key = keys[i];
+            min = Math.min(min, key);
+            max = Math.max(max, key);
+            if (key < keys[i - 1]) {
+                drops += keys[i - 1] - key;
+            }
+        }
+        double meanGap = ((double) max - min) / n;
+        if (!(meanGap > 0)) {
+            // All equal (already sorted) or not finite
+            return !(meanGap == 0);
+        }
+        return drops / meanGap > 8.0 * n;
+    }
+
+}
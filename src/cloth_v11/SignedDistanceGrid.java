@@ -0,0 +1,257 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Signed distance to a static shape (negative inside), sampled on a regular
+ * grid of points and interpolated trilinearly between them; the normal is
+ * the gradient of the interpolation. 'FromMesh' voxelizes a closed triangle
+ * mesh. Points outside the grid are treated as far from the shape
+ */
+public class SignedDistanceGrid {
+
+    private float originX, originY, originZ; // Position of sample (0, 0, 0)
+    private float cellSize, inverseCellSize;
+    private int nX, nY, nZ; // Samples along each axis
+    private float[] distances; // Index x + nX * (y + nY * z)
+
+    public SignedDistanceGrid(float originX, float originY, float originZ,
+            float cellSize, int nX, int nY, int nZ, float[] distances) {
+        if (nX < 2 || nY < 2 || nZ < 2 || distances.length != nX * nY * nZ) {
+            throw new IllegalArgumentException("Need at least two samples along"
+                    + " each axis and one distance per sample");
+        }
+        this.originX = originX;
+        this.originY = originY;
+        this.originZ = originZ;
+        this.cellSize = cellSize;
+        inverseCellSize = 1 / cellSize;
+        this.nX = nX;
+        this.nY = nY;
+        this.nZ = nZ;
+        this.distances = distances;
+    }
+
+    // Voxelizes the closed mesh with vertices 'vertices' (xyz) and triangles
+    //   'indices' (three vertex numbers each) on a grid of spacing
+    //   'cellSize' reaching 'padding' cells past the mesh. Each sample's
+    //   distance is to the nearest triangle and its sign is the majority vote
+    //   of the parity of crossings along x, y and z. This is a brute force
+    //   over the triangles, meant to be done once when the scene is built
+    public static SignedDistanceGrid FromMesh(float[] vertices, int[] indices,
+            float cellSize, int padding) {
+        float minX = Float.POSITIVE_INFINITY, minY = minX, minZ = minX;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = maxX, maxZ = maxX;
+        for (int i = 0; i < vertices.length; i += 3) {
+            minX = Math.min(minX, vertices[i]);
+            minY = Math.min(minY, vertices[i + 1]);
+            minZ = Math.min(minZ, vertices[i + 2]);
+            maxX = Math.max(maxX, vertices[i]);
+            maxY = Math.max(maxY, vertices[i + 1]);
+            maxZ = Math.max(maxZ, vertices[i + 2]);
+        }
+        float originX = minX - padding * cellSize;
+        float originY = minY - padding * cellSize;
+        float originZ = minZ - padding * cellSize;
+        int nX = (int) Math.ceil((maxX - minX) / cellSize) + 2 * padding + 1;
+        int nY = (int) Math.ceil((maxY - minY) / cellSize) + 2 * padding + 1;
+        int nZ = (int) Math.ceil((maxZ - minZ) / cellSize) + 2 * padding + 1;
+
+        float[] distances = new float[nX * nY * nZ];
+        for (int z = 0; z < nZ; z++) {
+            for (int y = 0; y < nY; y++) {
+                for (int x = 0; x < nX; x++) {
+                    double pX = originX + x * cellSize;
+                    double pY = originY + y * cellSize;
+                    double pZ = originZ + z * cellSize;
+                    double distance2 = Double.POSITIVE_INFINITY;
+                    int votes = 0;
+                    for (int axis = 0; axis < 3; axis++) {
+                        int crossings = 0;
+                        for (int t = 0; t < indices.length; t += 3) {
+                            if (RayCrosses(vertices, indices, t, pX, pY, pZ, axis)) {
+                                crossings++;
+                            }
+                        }
+                        votes += crossings & 1;
+                    }
+                    for (int t = 0; t < indices.length; t += 3) {
+                        distance2 = Math.min(distance2,
+                                Distance2ToTriangle(vertices, indices, t, pX, pY, pZ));
+                    }
+                    float distance = (float) Math.sqrt(distance2);
+                    distances[x + nX * (y + nY * z)] = votes >= 2 ? -distance : distance;
+                }
+            }
+        }
+        return new SignedDistanceGrid(originX, originY, originZ, cellSize,
+                nX, nY, nZ, distances);
+    }
+
+    // Whether the grid's region overlaps the given bounds
+    public boolean Overlaps(float minX, float minY, float minZ,
+            float maxX, float maxY, float maxZ) {
+        return originX <= maxX && originX + (nX - 1) * cellSize >= minX
+                && originY <= maxY && originY + (nY - 1) * cellSize >= minY
+                && originZ <= maxZ && originZ + (nZ - 1) * cellSize >= minZ;
+    }
+
+    // Fills 'distance' and the normals from index 0 with the signed distance
+    //   and outward unit normal of nodes 'start' to 'end - 1'
+    public void Distances(float[] nodes, int start, int end, float[] distance,
+            float[] normalX, float[] normalY, float[] normalZ) {
+        for (int node = start, j = 0; node < end; node++, j++) {
+            float gx = (nodes[3 * node] - originX) * inverseCellSize;
+            float gy = (nodes[3 * node + 1] - originY) * inverseCellSize;
+            float gz = (nodes[3 * node + 2] - originZ) * inverseCellSize;
+            if (!(gx >= 0 && gy >= 0 && gz >= 0
+                    && gx <= nX - 1 && gy <= nY - 1 && gz <= nZ - 1)) {
+                distance[j] = Float.POSITIVE_INFINITY;
+                normalX[j] = 0;
+                normalY[j] = 0;
+                normalZ[j] = 0;
+                continue;
+            }
+
+            // The cell holding the node, and the node's place within it
+            int x = Math.min((int) gx, nX - 2);
+            int y = Math.min((int) gy, nY - 2);
+            int z = Math.min((int) gz, nZ - 2);
+            float fx = gx - x, fy = gy - y, fz = gz - z;
+            int i = x + nX * (y + nY * z);
+            float d000 = distances[i], d100 = distances[i + 1];
+            float d010 = distances[i + nX], d110 = distances[i + nX + 1];
+            float d001 = distances[i + nX * nY], d101 = distances[i + nX * nY + 1];
+            float d011 = distances[i + nX * nY + nX];
+            float d111 = distances[i + nX * nY + nX + 1];
+
+            // Interpolate along x, then y, then z
+            float d00 = d000 + fx * (d100 - d000);
+            float d10 = d010 + fx * (d110 - d010);
+            float d01 = d001 + fx * (d101 - d001);
+            float d11 = d011 + fx * (d111 - d011);
+            float d0 = d00 + fy * (d10 - d00);
+            float d1 = d01 + fy * (d11 - d01);
+            distance[j] = d0 + fz * (d1 - d0);
+
+            // Gradient of the interpolation
+            float dx0 = (d100 - d000) + fy * ((d110 - d010) - (d100 - d000));
+            float dx1 = (d101 - d001) + fy * ((d111 - d011) - (d101 - d001));
+            float gradientX = dx0 + fz * (dx1 - dx0);
+            float gradientY = (d10 - d00) + fz * ((d11 - d01) - (d10 - d00));
+            float gradientZ = d1 - d0;
+            float length = (float) Math.sqrt(gradientX * gradientX
+                    + gradientY * gradientY + gradientZ * gradientZ);
+            float inverse = 1 / Math.max(length, Float.MIN_NORMAL);
+            normalX[j] = gradientX * inverse;
+            normalY[j] = gradientY * inverse;
+            normalZ[j] = gradientZ * inverse;
+        }
+    }
+
+    public float GetCellSize() {
+        return cellSize;
+    }
+
+    // Whether the ray from P in the positive direction of 'axis' (0 = x,
+    //   1 = y, 2 = z) crosses triangle 't' (its first index in 'indices')
+    private static boolean RayCrosses(float[] vertices, int[] indices, int t,
+            double pX, double pY, double pZ, int axis) {
+        // Work in the plane across the ray: u and v are the other two axes
+        int u = (axis + 1) % 3, v = (axis + 2) % 3;
+        double p0 = axis == 0 ? pX : axis == 1 ? pY : pZ;
+        double pu = u == 0 ? pX : u == 1 ? pY : pZ;
+        double pv = v == 0 ? pX : v == 1 ? pY : pZ;
+        int a = 3 * indices[t], b = 3 * indices[t + 1], c = 3 * indices[t + 2];
+        double au = vertices[a + u] - pu, av = vertices[a + v] - pv;
+        double bu = vertices[b + u] - pu, bv = vertices[b + v] - pv;
+        double cu = vertices[c + u] - pu, cv = vertices[c + v] - pv;
+
+        // Signed areas of the ray's point with each edge; a crossing has all
+        //   three the same sign
+        double wa = bu * cv - bv * cu;
+        double wb = cu * av - cv * au;
+        double wc = au * bv - av * bu;
+        if (!((wa >= 0 && wb >= 0 && wc >= 0) || (wa <= 0 && wb <= 0 && wc <= 0))) {
+            return false;
+        }
+        double sum = wa + wb + wc;
+        if (sum == 0) {
+            // Edge on to the ray
+            return false;
+        }
+        // Where the ray meets the triangle's plane
+        double hit = (wa * vertices[a + axis] + wb * vertices[b + axis]
+                + wc * vertices[c + axis]) / sum;
+        return hit > p0;
+    }
+
+    // Squared distance from P to triangle 't' (its first index in 'indices')
+    private static double Distance2ToTriangle(float[] vertices, int[] indices,
+            int t, double pX, double pY, double pZ) {
+        int a = 3 * indices[t], b = 3 * indices[t + 1], c = 3 * indices[t + 2];
+        double abX = vertices[b] - vertices[a];
+        double abY = vertices[b + 1] - vertices[a + 1];
+        double abZ = vertices[b + 2] - vertices[a + 2];
+        double acX = vertices[c] - vertices[a];
+        double acY = vertices[c + 1] - vertices[a + 1];
+        double acZ = vertices[c + 2] - vertices[a + 2];
+        double apX = pX - vertices[a];
+        double apY = pY - vertices[a + 1];
+        double apZ = pZ - vertices[a + 2];
+
+        // Closest point by Voronoi region of the triangle
+        double d1 = abX * apX + abY * apY + abZ * apZ;
+        double d2 = acX * apX + acY * apY + acZ * apZ;
+        double s, w;
+        if (d1 <= 0 && d2 <= 0) {
+            s = 0;
+            w = 0;
+        } else {
+            double bpX = pX - vertices[b], bpY = pY - vertices[b + 1],
+                    bpZ = pZ - vertices[b + 2];
+            double d3 = abX * bpX + abY * bpY + abZ * bpZ;
+            double d4 = acX * bpX + acY * bpY + acZ * bpZ;
+            double cpX = pX - vertices[c], cpY = pY - vertices[c + 1],
+                    cpZ = pZ - vertices[c + 2];
+            double d5 = abX * cpX + abY * cpY + abZ * cpZ;
+            double d6 = acX * cpX + acY * cpY + acZ * cpZ;
+            double vc = d1 * d4 - d3 * d2;
+            double vb = d5 * d2 - d1 * d6;
+            double va = d3 * d6 - d5 * d4;
+            if (d3 >= 0 && d4 <= d3) {
+                s = 1;
+                w = 0;
+            } else if (d6 >= 0 && d5 <= d6) {
+                s = 0;
+                w = 1;
+            } else if (vc <= 0 && d1 >= 0 && d3 <= 0) {
+                s = d1 / (d1 - d3);
+                w = 0;
+            } else if (vb <= 0 && d2 >= 0 && d6 <= 0) {
+                s = 0;
+                w = d2 / (d2 - d6);
+            } else if (va <= 0 && d4 - d3 >= 0 && d5 - d6 >= 0) {
+                w = (d4 - d3) / ((d4 - d3) + (d5 - d6));
+                s = 1 - w;
+            } else {
+                double denominator = 1 / (va + vb + vc);
+                s = vb * denominator;
+                w = vc * denominator;
+            }
+        }
+        double x = apX - s * abX - w * acX;
+        double y = apY - s * abY - w * acY;
+        double z = apZ - s * abZ - w * acZ;
+        return x * x + y * y + z * z;
+    }
+
+}
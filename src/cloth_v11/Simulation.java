@@ -8,6 +8,7 @@ package cloth_v11;
 import com.sun.j3d.utils.geometry.Sphere;
 import com.sun.j3d.utils.universe.*;
 import java.awt.Color;
+import java.io.File;
 import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -26,7 +27,7 @@ import javax.vecmath.Vector3f;
 /**
  * @author Jack Reardon
  * @created Jun 30, 2014
- * @edited Jun 30, 2014
+ * @edited Oct 17, 2026
  */
 public class Simulation {
 
@@ -46,9 +47,16 @@ public class Simulation {
             cameraAdjustCountLimit;
     double cameraAdjustRate;
     boolean willSetCameraPositionShortcut; // For setting shortcut keys
+    SoftwareRenderer captureRenderer; // Created when first capturing
+    volatile boolean captureRequested; // Set and cleared by 'ToggleCapture'
+    FrameCapture capture; // null unless frames are being captured; owned by
+    // the thread calling 'UpdateVisual'
+    static final String captureDirectoryName = "captures";
     Vector3d up;
 
     Cloth c;
+    SimulationScheduler scheduler; // Steps the cloth's physics off the Swing thread
+    static final int substepsPerFrame = 2;
 
     public Simulation(String title) {
         interactionHandler = new InteractionHandler(title, this);
@@ -113,8 +121,10 @@ public class Simulation {
         c.AddToBG(objRoot);
     }
 
+    // Adds a sphere which the cloth (so must be added first) collides with
     private void AddSphere() {
-        Sphere sphere = new Sphere(1f);
+        float radius = 1;
+        Sphere sphere = new Sphere(radius);
         TransformGroup transformationGroup = new TransformGroup();
         Transform3D transform3D = new Transform3D();
 
@@ -124,6 +134,9 @@ public class Simulation {
         transformationGroup.addChild(sphere);
 
         objRoot.addChild(transformationGroup);
+
+        c.GetSolver().GetColliders().AddSphere((float) transformVector.x,
+                (float) transformVector.y, (float) transformVector.z, radius);
     }
 
     // Set the lighting
@@ -168,15 +181,55 @@ public class Simulation {
     }
 
     private void Run() {
+        scheduler = new SimulationScheduler(c.GetSolver(), substepsPerFrame);
+        scheduler.SetSnapshots(c.GetSnapshots());
+        scheduler.Start();
+
         interactionHandler.Run();
     }
 
-    public void Update() {
-        c.Update();
+    // Starts or stops saving each frame shown (see 'FrameCapture'), drawn
+    //   in software from the current camera. Only asks: the capture is
+    //   started and stopped by the next 'UpdateVisual', on the thread that
+    //   saves the frames
+    public void ToggleCapture() {
+        captureRequested = !captureRequested;
+    }
+
+    // Starts or stops the capture to match 'captureRequested', then saves
+    //   the frame just shown if capturing
+    private void UpdateCapture() {
+        boolean requested = captureRequested;
+        if (requested && capture == null) {
+            if (captureRenderer == null) {
+                captureRenderer = new SoftwareRenderer(500, 500);
+            }
+            // A directory of its own for each run of frames
+            capture = new FrameCapture(new File(captureDirectoryName,
+                    "capture_" + System.currentTimeMillis()),
+                    Runtime.getRuntime().availableProcessors());
+        } else if (!requested && capture != null) {
+            capture.Finish();
+            Arit.NL(capture.GetNumberOfFrames() + " frames saved to "
+                    + capture.GetDirectory());
+            capture = null;
+        }
+
+        if (capture != null) {
+            capture.Save(c.Render(captureRenderer, currentCameraPosition,
+                    currentFocusPosition, up));
+        }
+    }
+
+    public void TogglePause() {
+        scheduler.SetPaused(!scheduler.IsPaused());
     }
 
     public void UpdateVisual() {
-        c.UpdateVisual();
+        c.UpdateVisual(scheduler.GetInterpolationAlpha(),
+                scheduler.GetFrameTime());
+
+        UpdateCapture();
 
         if (cameraAdjustPositionCount > 0) {
             AdjustCurrentCameraPosition();
@@ -0,0 +1,179 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Steps a 'ClothSolver' on its own thread at a fixed time step, tied to wall
+ * time. Elapsed wall time (scaled by 'timeScale') is added to an accumulator
+ * and whole frames are stepped out of it; each frame is 'substepsPerFrame'
+ * solver steps of 'dt'. If the solver falls behind, at most
+ * 'maxFramesPerTick' frames are run at once and the rest of the backlog is
+ * dropped, so the simulation slows down rather than spiralling.
+ *
+ * Steps are made while holding the solver's lock; readers of the solver's
+ * state on other threads should synchronise on the solver as well, or read
+ * the frames published to the 'SnapshotBuffer' given, which needs no lock
+ */
+public class SimulationScheduler implements Runnable {
+
+    private ClothSolver solver;
+    private volatile SnapshotBuffer snapshots; // Where frames are published
+    private Thread thread;
+    private volatile boolean running, paused;
+
+    private volatile int substepsPerFrame, maxFramesPerTick;
+    private volatile double frameTime; // Simulated seconds per frame
+    private volatile double timeScale; // Simulated seconds per wall second
+    private double accumulator; // Simulated seconds not yet stepped
+    private volatile float interpolationAlpha; // accumulator / frameTime
+    private volatile long tickTime; // Wall time (ns) 'interpolationAlpha' is for
+    private long framesStepped, framesDropped;
+
+    public SimulationScheduler(ClothSolver solver, int substepsPerFrame) {
+        this.solver = solver;
+        this.substepsPerFrame = Math.max(substepsPerFrame, 1);
+        frameTime = this.substepsPerFrame * solver.GetTimeStep();
+        maxFramesPerTick = 4;
+        timeScale = 1;
+    }
+
+    public synchronized void Start() {
+        if (thread == null) {
+            running = true;
+            thread = new Thread(this, "Cloth physics");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized void Stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    public void SetPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    public boolean IsPaused() {
+        return paused;
+    }
+
+    // Sets the number of solver steps each frame is split into, keeping the
+    //   frame time (so the solver's time step changes)
+    public void SetSubstepsPerFrame(int substepsPerFrame) {
+        synchronized (solver) {
+            this.substepsPerFrame = Math.max(substepsPerFrame, 1);
+            solver.SetTimeStep((float) (frameTime / this.substepsPerFrame));
+        }
+    }
+
+    // Sets the simulated time per frame (so the solver's time step changes)
+    public void SetFrameTime(double frameTime) {
+        synchronized (solver) {
+            this.frameTime = frameTime;
+            solver.SetTimeStep((float) (frameTime / substepsPerFrame));
+        }
+    }
+
+    // Sets where each tick's last frame is published (null for nowhere)
+    public void SetSnapshots(SnapshotBuffer snapshots) {
+        this.snapshots = snapshots;
+    }
+
+    public void SetMaxFramesPerTick(int maxFramesPerTick) {
+        this.maxFramesPerTick = Math.max(maxFramesPerTick, 1);
+    }
+
+    public void SetTimeScale(double timeScale) {
+        this.timeScale = timeScale;
+    }
+
+    public double GetFrameTime() {
+        return frameTime;
+    }
+
+    // Returns how far (0 to 1, in frames) the simulated time the wall clock
+    //   has reached is past the last stepped frame. Between ticks the
+    //   physics thread sleeps, so the wall time since the last tick is added
+    public float GetInterpolationAlpha() {
+        float alpha = interpolationAlpha;
+        if (!paused) {
+            alpha += (float) ((System.nanoTime() - tickTime) * 1e-9 * timeScale
+                    / frameTime);
+        }
+        return Math.min(Math.max(alpha, 0), 1);
+    }
+
+    public long GetFramesStepped() {
+        return framesStepped;
+    }
+
+    // Returns the number of frames skipped because stepping fell behind
+    public long GetFramesDropped() {
+        return framesDropped;
+    }
+
+    @Override
+    public void run() {
+        long last = System.nanoTime();
+        while (running) {
+            long now = System.nanoTime();
+            if (!paused) {
+                accumulator += (now - last) * 1e-9 * timeScale;
+            }
+            last = now;
+
+            int frames = 0;
+            while (accumulator >= frameTime && frames < maxFramesPerTick) {
+                synchronized (solver) {
+                    solver.Step(substepsPerFrame);
+                }
+                accumulator -= frameTime;
+                frames++;
+                framesStepped++;
+            }
+            SnapshotBuffer snapshots = this.snapshots;
+            if (frames > 0 && snapshots != null) {
+                synchronized (solver) {
+                    snapshots.Publish(solver);
+                }
+            }
+
+            // Catch-up limit: drop whole frames we have no time for
+            if (accumulator >= frameTime) {
+                long behind = (long) (accumulator / frameTime);
+                framesDropped += behind;
+                accumulator -= behind * frameTime;
+            }
+            interpolationAlpha = (float) (accumulator / frameTime);
+            tickTime = now;
+
+            // Sleep until the next frame is due
+            double wait = paused || timeScale <= 0 ? frameTime
+                    : (frameTime - accumulator) / timeScale;
+            if (wait > 0 && running) {
+                LockSupport.parkNanos((long) (wait * 1e9));
+            }
+        }
+    }
+
+}
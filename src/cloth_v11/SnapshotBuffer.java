@@ -0,0 +1,292 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Hands completed frames of a 'ClothSolver' from the physics thread to the
+ * render thread without either waiting on the other. There are three
+ * snapshots: the writer fills the back one, the reader holds the front one,
+ * and the third is the newest published frame. Publishing and reading each
+ * swap one of their own with that middle snapshot in a single atomic
+ * exchange, so neither side ever touches a snapshot the other holds. The
+ * reader sees the newest frame published, skipping any it was too slow for.
+ *
+ * Each snapshot also holds per-node normals, the area weighted sum of the
+ * normals of the triangles of the display strips around the node.
+ *
+ * Only what has changed is written. The solver reports which tiles of
+ * columns are dirty (see 'ClothSolver.TakeDirtyTiles'); each snapshot keeps
+ * the tiles it has yet to catch up on, since it may have missed the last
+ * frame or two. Publishing is two parallel passes on the solver's worker
+ * pool: the first copies the positions and colours of the back snapshot's
+ * pending tiles, and the second recomputes the normals of the columns next
+ * to a copied one. A cloth at rest costs next to nothing. Each tile of a
+ * snapshot carries the number of the frame it last changed in, so a reader
+ * can tell which tiles differ between two snapshots without comparing them.
+ *
+ * One thread may publish and one other thread may read
+ */
+public class SnapshotBuffer {
+
+    // A frame of the cloth as displayed
+    public static class Snapshot {
+
+        private final float[] positions; // As 'ClothSolver.GetNodes'
+        private final float[] normals; // Unit, three per node
+        private final float[] colours; // Red where a node's triangle collided
+        private final boolean[] tilesPending; // Changed since last copied
+        private final long[] tilesVersion; // Frame each tile last changed in
+        private long frame;
+        private double time; // As 'ClothSolver.GetTime'
+
+        private Snapshot(int nNodes, int nTiles) {
+            positions = new float[3 * nNodes];
+            normals = new float[3 * nNodes];
+            colours = new float[3 * nNodes];
+            tilesPending = new boolean[nTiles];
+            Arrays.fill(tilesPending, true);
+            tilesVersion = new long[nTiles];
+        }
+
+        public float[] GetPositions() {
+            return positions;
+        }
+
+        public float[] GetNormals() {
+            return normals;
+        }
+
+        public float[] GetColours() {
+            return colours;
+        }
+
+        // Returns the number of the frame (counted from 1 by 'Publish')
+        public long GetFrame() {
+            return frame;
+        }
+
+        // Returns the simulated time of the frame
+        public double GetTime() {
+            return time;
+        }
+
+        // Returns the number of the frame in which the tile last changed (0
+        //   if never). Two snapshots whose tile has the same number hold the
+        //   same nodes for it, to within the solver's redraw threshold
+        public long GetTileVersion(int tile) {
+            return tilesVersion[tile];
+        }
+    }
+
+    private static final int indexMask = 3;
+    private static final int fresh = 4; // Set when the middle is unread
+    private static final int columnGrain = 8;
+
+    private final Snapshot[] snapshots;
+    private final AtomicInteger middle; // Index of the middle, plus 'fresh'
+    private int back, front; // Owned by the writer and the reader
+    private long nPublished;
+
+    private final int nWidth, // # nodes across - 1
+            nDepth, // # nodes deep - 1
+            tileWidth, nTiles;
+
+    // Writer's state while publishing
+    private final boolean[] tilesDirty, // As taken from the solver
+            tilesRed, // Showing a colliding node, so to be cleared next frame
+            columnsCopied;
+    private final long[] tilesVersion; // Frame each tile last changed in
+    private ClothSolver source;
+    private Snapshot target;
+    private final WorkerPool.RangeBody copyBody, normalsBody;
+
+    // Holds frames of 'solver', whose size must not change
+    public SnapshotBuffer(ClothSolver solver) {
+        nWidth = solver.GetWidth();
+        nDepth = solver.GetDepth();
+        tileWidth = solver.GetTileWidth();
+        nTiles = solver.GetNumberOfTiles();
+        int nNodes = (nWidth + 1) * (nDepth + 1);
+        snapshots = new Snapshot[3];
+        for (int i = 0; i < 3; i++) {
+            snapshots[i] = new Snapshot(nNodes, nTiles);
+        }
+        back = 0;
+        middle = new AtomicInteger(1);
+        front = 2;
+
+        tilesDirty = new boolean[nTiles];
+        tilesRed = new boolean[nTiles];
+        tilesVersion = new long[nTiles];
+        columnsCopied = new boolean[nWidth + 1];
+        copyBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                for (int tile = start; tile < end; tile++) {
+                    CopyTile(tile);
+                }
+            }
+        };
+        normalsBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                for (int x = start; x < end; x++) {
+                    NormalsOfColumn(x);
+                }
+            }
+        };
+    }
+
+    // Brings the back snapshot up to the solver's current state and makes
+    //   it the newest frame. The solver's collision flags are cleared, so
+    //   each frame shows the collisions since the last. Must be called by the
+    //   writer with the solver not stepping
+    public void Publish(ClothSolver solver) {
+        solver.TakeDirtyTiles(tilesDirty);
+        for (int tile = 0; tile < nTiles; tile++) {
+            if (tilesDirty[tile] || tilesRed[tile]) {
+                for (Snapshot snapshot : snapshots) {
+                    snapshot.tilesPending[tile] = true;
+                }
+                tilesVersion[tile] = nPublished + 1;
+            }
+        }
+
+        Snapshot snapshot = snapshots[back];
+        source = solver;
+        target = snapshot;
+        WorkerPool pool = solver.GetWorkerPool();
+        pool.ForEachChunk(0, nTiles, 1, copyBody);
+        pool.ForEachChunk(0, nWidth + 1, columnGrain, normalsBody);
+        source = null;
+        target = null;
+        solver.ClearCollisionFlags();
+        snapshot.frame = ++nPublished;
+        snapshot.time = solver.GetTime();
+
+        back = middle.getAndSet(back | fresh) & indexMask;
+    }
+
+    // Returns the newest published snapshot, which stays unchanged until the
+    //   reader's next call
+    public Snapshot Read() {
+        if ((middle.get() & fresh) != 0) {
+            front = middle.getAndSet(front) & indexMask;
+        }
+        return snapshots[front];
+    }
+
+    // Whether a frame has been published since the last 'Read'
+    public boolean IsFresh() {
+        return (middle.get() & fresh) != 0;
+    }
+
+    // Copies the nodes of the tile into the target, with colours, if the
+    //   target has yet to catch up on it
+    private void CopyTile(int tile) {
+        int startColumn = tile * tileWidth;
+        int endColumn = Math.min(startColumn + tileWidth, nWidth + 1);
+        boolean pending = target.tilesPending[tile];
+        for (int x = startColumn; x < endColumn; x++) {
+            columnsCopied[x] = pending;
+        }
+        if (!pending) {
+            return;
+        }
+
+        float[] nodes = source.GetNodes();
+        float[] positions = target.positions, colours = target.colours;
+        int start = startColumn * (nDepth + 1), end = endColumn * (nDepth + 1);
+        System.arraycopy(nodes, 3 * start, positions, 3 * start, 3 * (end - start));
+        boolean red = false;
+        for (int node = start; node < end; node++) {
+            boolean colliding = source.IsNodeColliding(node);
+            float notColliding = colliding ? 0 : 1;
+            colours[3 * node] = 1;
+            colours[3 * node + 1] = notColliding;
+            colours[3 * node + 2] = notColliding;
+            red |= colliding;
+        }
+        tilesRed[tile] = red;
+        target.tilesPending[tile] = false;
+        target.tilesVersion[tile] = tilesVersion[tile];
+    }
+
+    // Recomputes the normals of column 'x' if it or a column beside it was
+    //   copied
+    private void NormalsOfColumn(int x) {
+        boolean nearCopied = columnsCopied[x]
+                || (x > 0 && columnsCopied[x - 1])
+                || (x < nWidth && columnsCopied[x + 1]);
+        if (nearCopied) {
+            for (int z = 0; z < nDepth + 1; z++) {
+                Normal(x, z);
+            }
+        }
+    }
+
+    // Sets the normal of node x-z from the (up to six) strip triangles
+    //   around it. Strip x runs x-z, (x + 1)-z, x-(z + 1), (x + 1)-(z + 1)
+    //   ..., so cell x-z is split into triangles x-z, (x + 1)-z, x-(z + 1)
+    //   and (x + 1)-z, (x + 1)-(z + 1), x-(z + 1)
+    private void Normal(int x, int z) {
+        float[] normals = target.normals;
+        int n = 3 * Node(x, z);
+        normals[n] = 0;
+        normals[n + 1] = 0;
+        normals[n + 2] = 0;
+        if (x < nWidth && z < nDepth) {
+            AddFace(n, Node(x, z), Node(x + 1, z), Node(x, z + 1));
+        }
+        if (x > 0 && z < nDepth) {
+            AddFace(n, Node(x - 1, z), Node(x, z), Node(x - 1, z + 1));
+            AddFace(n, Node(x, z), Node(x, z + 1), Node(x - 1, z + 1));
+        }
+        if (x < nWidth && z > 0) {
+            AddFace(n, Node(x, z - 1), Node(x + 1, z - 1), Node(x, z));
+            AddFace(n, Node(x + 1, z - 1), Node(x + 1, z), Node(x, z));
+        }
+        if (x > 0 && z > 0) {
+            AddFace(n, Node(x, z - 1), Node(x, z), Node(x - 1, z));
+        }
+        float length = (float) Math.sqrt(normals[n] * normals[n]
+                + normals[n + 1] * normals[n + 1] + normals[n + 2] * normals[n + 2]);
+        float inverse = 1 / Math.max(length, Float.MIN_NORMAL);
+        normals[n] *= inverse;
+        normals[n + 1] *= inverse;
+        normals[n + 2] *= inverse;
+    }
+
+    // Adds to the normal at 'n' twice the area weighted normal of the
+    //   triangle of nodes 'a', 'b' and 'c' (facing +y for a flat cloth)
+    private void AddFace(int n, int a, int b, int c) {
+        float[] positions = target.positions;
+        float abX = positions[3 * b] - positions[3 * a];
+        float abY = positions[3 * b + 1] - positions[3 * a + 1];
+        float abZ = positions[3 * b + 2] - positions[3 * a + 2];
+        float acX = positions[3 * c] - positions[3 * a];
+        float acY = positions[3 * c + 1] - positions[3 * a + 1];
+        float acZ = positions[3 * c + 2] - positions[3 * a + 2];
+        float[] normals = target.normals;
+        normals[n] += acY * abZ - acZ * abY;
+        normals[n + 1] += acZ * abX - acX * abZ;
+        normals[n + 2] += acX * abY - acY * abX;
+    }
+
+    // Node number of node x-z
+    private int Node(int x, int z) {
+        return x * (nDepth + 1) + z;
+    }
+
+}
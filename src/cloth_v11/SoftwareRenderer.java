@@ -0,0 +1,204 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+import javax.vecmath.Point3d;
+import javax.vecmath.Vector3d;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Draws the cloth into a 'BufferedImage' without Java3D or OpenGL, so frames
+ * can be made on machines with no display. The cloth is drawn as the same
+ * triangle strips 'Cloth' shows (strip x running x-z, (x + 1)-z, x-(z + 1),
+ * ...) with a depth buffer, lit per vertex by the scene's directional light
+ * from both sides and shaded smoothly between. The camera is a perspective
+ * look-at as 'Simulation' sets up for Java3D, with the same field of view
+ */
+public class SoftwareRenderer {
+
+    private static final double nearDistance = 0.01; // Closer is not drawn
+
+    private int width, height;
+    private double fieldOfView; // Horizontal, in radians
+
+    // The light, as 'Simulation.SetLighting'
+    private float lightX, lightY, lightZ; // Unit, towards the light
+    private float lightRed, lightGreen, lightBlue;
+    private int background;
+
+    private float[] depths; // 1 / distance along the view, 0 where empty
+
+    // Vertices in the screen, per node
+    private float[] screenX, screenY, inverseDistance;
+    private float[] red, green, blue;
+
+    public SoftwareRenderer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        fieldOfView = Math.PI / 4;
+        SetLight(4, -7, -12, .1f, 1.4f, .1f);
+        background = Color.LIGHT_GRAY.getRGB();
+        depths = new float[width * height];
+        screenX = new float[0];
+    }
+
+    // Sets the direction the light shines in and its colour
+    public void SetLight(float directionX, float directionY, float directionZ,
+            float red, float green, float blue) {
+        float length = (float) Math.sqrt(directionX * directionX
+                + directionY * directionY + directionZ * directionZ);
+        lightX = -directionX / length;
+        lightY = -directionY / length;
+        lightZ = -directionZ / length;
+        lightRed = red;
+        lightGreen = green;
+        lightBlue = blue;
+    }
+
+    public void SetFieldOfView(double fieldOfView) {
+        this.fieldOfView = fieldOfView;
+    }
+
+    public void SetBackground(Color background) {
+        this.background = background.getRGB();
+    }
+
+    // Draws the cloth of 'nWidth' by 'nDepth' cells (as 'ClothSolver'), with
+    //   positions, normals and colours three per node, seen from 'eye'
+    //   looking at 'focus'. Returns a new image each time, so it may be
+    //   handed on while the next is drawn
+    public BufferedImage Render(float[] positions, float[] normals,
+            float[] colours, int nWidth, int nDepth,
+            Point3d eye, Point3d focus, Vector3d up) {
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_RGB);
+        int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        Arrays.fill(pixels, background);
+        Arrays.fill(depths, 0);
+
+        Project(positions, normals, colours, eye, focus, up);
+
+        for (int x = 0; x < nWidth; x++) {
+            // Strip x: each triangle is three successive vertices
+            int a = x * (nDepth + 1), b = a + nDepth + 1;
+            for (int z = 0; z < nDepth; z++) {
+                DrawTriangle(pixels, a + z, b + z, a + z + 1);
+                DrawTriangle(pixels, b + z, a + z + 1, b + z + 1);
+            }
+        }
+        return image;
+    }
+
+    // Finds each node's place in the screen and its lit colour
+    private void Project(float[] positions, float[] normals, float[] colours,
+            Point3d eye, Point3d focus, Vector3d up) {
+        int nNodes = positions.length / 3;
+        if (screenX.length < nNodes) {
+            screenX = new float[nNodes];
+            screenY = new float[nNodes];
+            inverseDistance = new float[nNodes];
+            red = new float[nNodes];
+            green = new float[nNodes];
+            blue = new float[nNodes];
+        }
+
+        // The camera's axes
+        Vector3d forward = new Vector3d(focus);
+        forward.sub(eye);
+        forward.normalize();
+        Vector3d right = new Vector3d();
+        right.cross(forward, up);
+        right.normalize();
+        Vector3d cameraUp = new Vector3d();
+        cameraUp.cross(right, forward);
+        double scale = 0.5 * width / Math.tan(0.5 * fieldOfView);
+
+        for (int node = 0; node < nNodes; node++) {
+            int i = 3 * node;
+            double dx = positions[i] - eye.x;
+            double dy = positions[i + 1] - eye.y;
+            double dz = positions[i + 2] - eye.z;
+            double along = dx * forward.x + dy * forward.y + dz * forward.z;
+            double across = dx * right.x + dy * right.y + dz * right.z;
+            double above = dx * cameraUp.x + dy * cameraUp.y + dz * cameraUp.z;
+            if (along < nearDistance) {
+                inverseDistance[node] = 0;
+            } else {
+                inverseDistance[node] = (float) (1 / along);
+                screenX[node] = (float) (0.5 * width + scale * across / along);
+                screenY[node] = (float) (0.5 * height - scale * above / along);
+            }
+
+            // Lit from either side, as if the normal faced the camera
+            float facing = (float) (normals[i] * dx + normals[i + 1] * dy
+                    + normals[i + 2] * dz) > 0 ? -1 : 1;
+            float lit = facing * (normals[i] * lightX + normals[i + 1] * lightY
+                    + normals[i + 2] * lightZ);
+            lit = Math.max(lit, 0);
+            red[node] = Math.min(colours[i] * lightRed * lit, 1);
+            green[node] = Math.min(colours[i + 1] * lightGreen * lit, 1);
+            blue[node] = Math.min(colours[i + 2] * lightBlue * lit, 1);
+        }
+    }
+
+    // Fills the pixels whose centres the triangle of nodes 'a', 'b' and 'c'
+    //   covers, nearer than what is there already
+    private void DrawTriangle(int[] pixels, int a, int b, int c) {
+        if (inverseDistance[a] == 0 || inverseDistance[b] == 0
+                || inverseDistance[c] == 0) {
+            // Partly behind the camera
+            return;
+        }
+        float ax = screenX[a], ay = screenY[a];
+        float bx = screenX[b], by = screenY[b];
+        float cx = screenX[c], cy = screenY[c];
+        float area = (bx - ax) * (cy - ay) - (by - ay) * (cx - ax);
+        if (!(area != 0)) {
+            // Edge on (or not finite)
+            return;
+        }
+        float inverseArea = 1 / area;
+
+        int minX = Math.max((int) Math.floor(Math.min(ax, Math.min(bx, cx))), 0);
+        int maxX = Math.min((int) Math.ceil(Math.max(ax, Math.max(bx, cx))), width - 1);
+        int minY = Math.max((int) Math.floor(Math.min(ay, Math.min(by, cy))), 0);
+        int maxY = Math.min((int) Math.ceil(Math.max(ay, Math.max(by, cy))), height - 1);
+
+        for (int y = minY; y <= maxY; y++) {
+            float py = y + 0.5f;
+            for (int x = minX; x <= maxX; x++) {
+                float px = x + 0.5f;
+                // Barycentric weights, all the area's sign inside
+                float wa = ((bx - px) * (cy - py) - (by - py) * (cx - px)) * inverseArea;
+                float wb = ((cx - px) * (ay - py) - (cy - py) * (ax - px)) * inverseArea;
+                float wc = 1 - wa - wb;
+                if (wa < 0 || wb < 0 || wc < 0) {
+                    continue;
+                }
+                float depth = wa * inverseDistance[a] + wb * inverseDistance[b]
+                        + wc * inverseDistance[c];
+                int pixel = y * width + x;
+                if (depth <= depths[pixel]) {
+                    continue;
+                }
+                depths[pixel] = depth;
+                int r = (int) (255 * (wa * red[a] + wb * red[b] + wc * red[c]) + 0.5f);
+                int g = (int) (255 * (wa * green[a] + wb * green[b] + wc * green[c]) + 0.5f);
+                int bl = (int) (255 * (wa * blue[a] + wb * blue[b] + wc * blue[c]) + 0.5f);
+                pixels[pixel] = (r << 16) | (g << 8) | bl;
+            }
+        }
+    }
+
+}
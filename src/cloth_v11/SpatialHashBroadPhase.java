@@ -0,0 +1,253 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.Arrays;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Broad phase over a uniform grid. Every triangle is entered into each cell
+ * its bounding box touches, using an open-addressed hash table from packed
+ * cell coordinates to a linked list of entries (all primitive arrays, cleared
+ * rather than reallocated each step). Triangles sharing a cell whose boxes
+ * overlap are reported once, from the cell holding the minimum corner of the
+ * overlap. Unlike sorting along an axis, the number of candidates does not
+ * blow up when the cloth lies flat along that axis.
+ *
+ * Triangles whose box spans more than 'maxCellsPerTriangle' cells (a badly
+ * stretched or exploded cloth) are kept out of the grid and tested against
+ * every other triangle instead. Pairs in an 'AdjacencyTable' set with
+ * 'SetExclusions' are never reported
+ */
+public class SpatialHashBroadPhase {
+
+    // Cell coordinates are packed into a key as three 21-bit fields
+    private static final int coordinateBits = 21;
+    private static final int coordinateOffset = 1 << (coordinateBits - 1);
+    private static final int maxCellsPerTriangle = 64;
+
+    private float inverseCellSize;
+
+    // Hash table: slot -> cell key (-1 if empty) and first entry in the cell
+    private long[] cellKeys;
+    private int[] cellHeads;
+    private int tableMask;
+    private int[] occupiedSlots; // Slots filled this step, in fill order
+    private int nOccupiedSlots;
+
+    // Entries: one per (triangle, cell), chained through 'entryNext'
+    private int[] entryTriangle, entryNext;
+    private int nEntries;
+
+    private int[] oversizedTriangles;
+    private int nOversizedTriangles;
+    private boolean[] triangleOversized;
+    private AdjacencyTable exclusions; // null to report every overlap
+
+    // Bounds being processed
+    private float[] minX, minY, minZ, maxX, maxY, maxZ;
+
+    public SpatialHashBroadPhase(int nTriangles, float cellSize) {
+        SetCellSize(cellSize);
+        AllocateTable(Math.max(16, Integer.highestOneBit(4 * nTriangles) * 2));
+        entryTriangle = new int[Math.max(8 * nTriangles, 16)];
+        entryNext = new int[entryTriangle.length];
+        oversizedTriangles = new int[nTriangles];
+        triangleOversized = new boolean[nTriangles];
+    }
+
+    public void SetCellSize(float cellSize) {
+        inverseCellSize = 1 / cellSize;
+    }
+
+    public float GetCellSize() {
+        return 1 / inverseCellSize;
+    }
+
+    // Sets the pairs (triangles sharing a vertex) left out of 'FindPairs',
+    //   or null to leave none out
+    public void SetExclusions(AdjacencyTable exclusions) {
+        this.exclusions = exclusions;
+    }
+
+    // Fills 'pairs' with every pair of triangles (lower index first) among
+    //   the first 'nTriangles' whose bounding boxes overlap
+    public void FindPairs(int nTriangles,
+            float[] minX, float[] minY, float[] minZ,
+            float[] maxX, float[] maxY, float[] maxZ,
+            PairBuffer pairs) {
+        this.minX = minX;
+        this.minY = minY;
+        this.minZ = minZ;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.maxZ = maxZ;
+        pairs.Clear();
+
+        // Insert, growing the table and starting again if it gets too full
+        while (!InsertAll(nTriangles)) {
+            ClearTable();
+            AllocateTable(2 * cellKeys.length);
+        }
+
+        for (int o = 0; o < nOccupiedSlots; o++) {
+            FindPairsInCell(occupiedSlots[o], pairs);
+        }
+
+        for (int o = 0; o < nOversizedTriangles; o++) {
+            int a = oversizedTriangles[o];
+            for (int b = 0; b < nTriangles; b++) {
+                // Pairs of two oversized triangles are reported by the lower
+                if (b != a && Overlap(a, b)
+                        && !(b < a && triangleOversized[b]) && !Excluded(a, b)) {
+                    pairs.Add(Math.min(a, b), Math.max(a, b));
+                }
+            }
+        }
+
+        for (int o = 0; o < nOversizedTriangles; o++) {
+            triangleOversized[oversizedTriangles[o]] = false;
+        }
+        ClearTable();
+    }
+
+    // Returns false if the table passed its load limit
+    private boolean InsertAll(int nTriangles) {
+        nEntries = 0;
+        for (int o = 0; o < nOversizedTriangles; o++) {
+            triangleOversized[oversizedTriangles[o]] = false;
+        }
+        nOversizedTriangles = 0;
+        for (int t = 0; t < nTriangles; t++) {
+            int x0 = Cell(minX[t]), x1 = Cell(maxX[t]);
+            int y0 = Cell(minY[t]), y1 = Cell(maxY[t]);
+            int z0 = Cell(minZ[t]), z1 = Cell(maxZ[t]);
+            if ((long) (x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1)
+                    > maxCellsPerTriangle) {
+                oversizedTriangles[nOversizedTriangles++] = t;
+                triangleOversized[t] = true;
+                continue;
+            }
+            for (int x = x0; x <= x1; x++) {
+                for (int y = y0; y <= y1; y++) {
+                    for (int z = z0; z <= z1; z++) {
+                        int slot = FindOrAddSlot(Key(x, y, z));
+                        if (slot < 0) {
+                            return false;
+                        }
+                        AddEntry(slot, t);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // Reports the overlapping pairs among the entries of the cell in 'slot'
+    //   for which this cell holds the minimum corner of the overlap
+    private void FindPairsInCell(int slot, PairBuffer pairs) {
+        long key = cellKeys[slot];
+        for (int i = cellHeads[slot]; i >= 0; i = entryNext[i]) {
+            int a = entryTriangle[i];
+            for (int j = entryNext[i]; j >= 0; j = entryNext[j]) {
+                int b = entryTriangle[j];
+                if (Overlap(a, b) && !Excluded(a, b)
+                        && Key(Cell(Math.max(minX[a], minX[b])),
+                                Cell(Math.max(minY[a], minY[b])),
+                                Cell(Math.max(minZ[a], minZ[b]))) == key) {
+                    pairs.Add(Math.min(a, b), Math.max(a, b));
+                }
+            }
+        }
+    }
+
+    private boolean Overlap(int a, int b) {
+        return minX[a] <= maxX[b] && minX[b] <= maxX[a]
+                && minY[a] <= maxY[b] && minY[b] <= maxY[a]
+                && minZ[a] <= maxZ[b] && minZ[b] <= maxZ[a];
+    }
+
+    private boolean Excluded(int a, int b) {
+        return exclusions != null && exclusions.AreAdjacent(a, b);
+    }
+
+    // The (clamped) grid coordinate of 'value'
+    private int Cell(float value) {
+        float cell = (float) Math.floor(value * inverseCellSize);
+        if (!(cell > -coordinateOffset)) {
+            // Also catches NaN
+            return -coordinateOffset;
+        }
+        return (int) Math.min(cell, coordinateOffset - 1);
+    }
+
+    private static long Key(int x, int y, int z) {
+        return ((long) (x + coordinateOffset) << (2 * coordinateBits))
+                | ((long) (y + coordinateOffset) << coordinateBits)
+                | (z + coordinateOffset);
+    }
+
+    // Returns the slot for 'key', claiming an empty one if the cell is new,
+    //   or -1 if the table is too full to add it
+    private int FindOrAddSlot(long key) {
+        int slot = Hash(key) & tableMask;
+        while (cellKeys[slot] != -1) {
+            if (cellKeys[slot] == key) {
+                return slot;
+            }
+            slot = (slot + 1) & tableMask;
+        }
+        if (2 * (nOccupiedSlots + 1) > cellKeys.length) {
+            return -1;
+        }
+        cellKeys[slot] = key;
+        cellHeads[slot] = -1;
+        occupiedSlots[nOccupiedSlots++] = slot;
+        return slot;
+    }
+
+    private static int Hash(long key) {
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ (key >>> 32));
+    }
+
+    private void AddEntry(int slot, int triangle) {
+        if (nEntries == entryTriangle.length) {
+            int[] newTriangle = new int[2 * nEntries];
+            int[] newNext = new int[2 * nEntries];
+            System.arraycopy(entryTriangle, 0, newTriangle, 0, nEntries);
+            System.arraycopy(entryNext, 0, newNext, 0, nEntries);
+            entryTriangle = newTriangle;
+            entryNext = newNext;
+        }
+        entryTriangle[nEntries] = triangle;
+        entryNext[nEntries] = cellHeads[slot];
+        cellHeads[slot] = nEntries;
+        nEntries++;
+    }
+
+    // Empties the slots filled this step
+    private void ClearTable() {
+        for (int o = 0; o < nOccupiedSlots; o++) {
+            cellKeys[occupiedSlots[o]] = -1;
+        }
+        nOccupiedSlots = 0;
+    }
+
+    // 'size' must be a power of two
+    private void AllocateTable(int size) {
+        cellKeys = new long[size];
+        Arrays.fill(cellKeys, -1);
+        cellHeads = new int[size];
+        occupiedSlots = new int[size / 2];
+        tableMask = size - 1;
+    }
+
+}
@@ -0,0 +1,322 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * The structural, shear and bending connectivity of a cloth grid, built once
+ * into flat arrays so that forces can be evaluated in single loops without
+ * any grid index arithmetic. Springs are stored grouped by colour class (see
+ * 'ColourSprings'); evaluating them in stored order, serially or one class at
+ * a time in parallel, accumulates forces in the same order either way
+ */
+public class SpringTable {
+
+    // Springs (structural and shear)
+    int nSprings;
+    int[] springsThis, // Index in 'nodes' of the first node of each spring
+            springsThat; // Index in 'nodes' of the second node of each spring
+    float[] springsStableDistance, // Rest length of each spring
+            springsConstant; // Stiffness of each spring
+
+    // Bending triples (a node and its two neighbours either side, in a line)
+    int nBending;
+    int[] bendingThis, // Index in 'nodes' of the middle node
+            bendingLeft, // Index in 'nodes' of the node to one side
+            bendingRight; // Index in 'nodes' of the node to the other side
+    float[] bendingStableDistance, // Rest distance between the two sides
+            bendingConstant;
+
+    // Colour classes: no two springs (or bending triples) of the same colour
+    //   write to the same node, so a class can be evaluated concurrently.
+    //   Colour c covers indices 'colourOffsets[c]' to 'colourOffsets[c + 1] - 1'
+    int[] springsColourOffsets,
+            bendingColourOffsets;
+
+    private int nWidth, nDepth;
+
+    public SpringTable(int nWidth, int nDepth,
+            float internodeSpringConstant, float internodeStableDistance,
+            float shearSpringConstant, float shearStableDistance,
+            float bendingSpringConstant) {
+        this.nWidth = nWidth;
+        this.nDepth = nDepth;
+
+        // # structural springs across + down, # shear springs both diagonals
+        int maxSprings = nWidth * (nDepth + 1) + (nWidth + 1) * nDepth
+                + 2 * nWidth * nDepth;
+        springsThis = new int[maxSprings];
+        springsThat = new int[maxSprings];
+        springsStableDistance = new float[maxSprings];
+        springsConstant = new float[maxSprings];
+
+        int maxBending = Math.max(nWidth - 1, 0) * (nDepth + 1)
+                + (nWidth + 1) * Math.max(nDepth - 1, 0);
+        bendingThis = new int[maxBending];
+        bendingLeft = new int[maxBending];
+        bendingRight = new int[maxBending];
+        bendingStableDistance = new float[maxBending];
+        bendingConstant = new float[maxBending];
+
+        for (int x = 0; x < nWidth + 1; x++) {
+            for (int z = 0; z < nDepth + 1; z++) {
+                if (x < nWidth) {
+                    // Right and left
+                    AddSpring(x, z, x + 1, z,
+                            internodeSpringConstant, internodeStableDistance);
+                }
+                if (z < nDepth) {
+                    // Up and down
+                    AddSpring(x, z, x, z + 1,
+                            internodeSpringConstant, internodeStableDistance);
+                }
+                if (x < nWidth && z < nDepth) {
+                    // Upper-Left to Bottom-Right
+                    AddSpring(x, z, x + 1, z + 1,
+                            shearSpringConstant, shearStableDistance);
+                }
+                if (x > 0 && z < nDepth) {
+                    // Upper-Right to Bottom-Left
+                    AddSpring(x, z, x - 1, z + 1,
+                            shearSpringConstant, shearStableDistance);
+                }
+
+                if (x > 0 && x < nWidth) {
+                    // Across the mesh
+                    AddBending(x, z, x - 1, z, x + 1, z,
+                            bendingSpringConstant, 2 * internodeStableDistance);
+                }
+                if (z > 0 && z < nDepth) {
+                    // Up and down the mesh
+                    AddBending(x, z, x, z - 1, x, z + 1,
+                            bendingSpringConstant, 2 * internodeStableDistance);
+                }
+            }
+        }
+
+        ColourSprings();
+        ColourBending();
+    }
+
+    private void AddSpring(int x, int z, int xAct, int zAct,
+            float springConstant, float stableDistance) {
+        springsThis[nSprings] = GetNode(x, z);
+        springsThat[nSprings] = GetNode(xAct, zAct);
+        springsConstant[nSprings] = springConstant;
+        springsStableDistance[nSprings] = stableDistance;
+        nSprings++;
+    }
+
+    private void AddBending(int x, int z, int xLeft, int zLeft,
+            int xRight, int zRight, float springConstant, float stableDistance) {
+        bendingThis[nBending] = GetNode(x, z);
+        bendingLeft[nBending] = GetNode(xLeft, zLeft);
+        bendingRight[nBending] = GetNode(xRight, zRight);
+        bendingConstant[nBending] = springConstant;
+        bendingStableDistance[nBending] = stableDistance;
+        nBending++;
+    }
+
+    // Greedily assigns each spring the lowest colour not already used by a
+    //   spring at either of its nodes, then reorders the springs by colour
+    private void ColourSprings() {
+        int[] colours = new int[nSprings];
+        long[] nodesColoursUsed = new long[(nWidth + 1) * (nDepth + 1)];
+        for (int s = 0; s < nSprings; s++) {
+            int nodeThis = springsThis[s] / 3;
+            int nodeThat = springsThat[s] / 3;
+            int colour = Long.numberOfTrailingZeros(
+                    ~(nodesColoursUsed[nodeThis] | nodesColoursUsed[nodeThat]));
+            colours[s] = colour;
+            nodesColoursUsed[nodeThis] |= 1L << colour;
+            nodesColoursUsed[nodeThat] |= 1L << colour;
+        }
+
+        int[] order = OrderByColour(colours, nSprings);
+        springsColourOffsets = ColourOffsets(colours, nSprings);
+
+        springsThis = Permute(springsThis, order);
+        springsThat = Permute(springsThat, order);
+        springsStableDistance = Permute(springsStableDistance, order);
+        springsConstant = Permute(springsConstant, order);
+    }
+
+    // As 'ColourSprings', where a bending triple writes to its two outer nodes
+    private void ColourBending() {
+        int[] colours = new int[nBending];
+        long[] nodesColoursUsed = new long[(nWidth + 1) * (nDepth + 1)];
+        for (int b = 0; b < nBending; b++) {
+            int nodeLeft = bendingLeft[b] / 3;
+            int nodeRight = bendingRight[b] / 3;
+            int colour = Long.numberOfTrailingZeros(
+                    ~(nodesColoursUsed[nodeLeft] | nodesColoursUsed[nodeRight]));
+            colours[b] = colour;
+            nodesColoursUsed[nodeLeft] |= 1L << colour;
+            nodesColoursUsed[nodeRight] |= 1L << colour;
+        }
+
+        int[] order = OrderByColour(colours, nBending);
+        bendingColourOffsets = ColourOffsets(colours, nBending);
+
+        bendingThis = Permute(bendingThis, order);
+        bendingLeft = Permute(bendingLeft, order);
+        bendingRight = Permute(bendingRight, order);
+        bendingStableDistance = Permute(bendingStableDistance, order);
+        bendingConstant = Permute(bendingConstant, order);
+    }
+
+    // Returns 'offsets' such that colour c occupies 'offsets[c]' to
+    //   'offsets[c + 1] - 1' once sorted by colour
+    private static int[] ColourOffsets(int[] colours, int n) {
+        int nColours = 0;
+        for (int i = 0; i < n; i++) {
+            nColours = Math.max(nColours, colours[i] + 1);
+        }
+        int[] offsets = new int[nColours + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[colours[i] + 1]++;
+        }
+        for (int c = 0; c < nColours; c++) {
+            offsets[c + 1] += offsets[c];
+        }
+        return offsets;
+    }
+
+    // Returns the (stable) order of the first 'n' elements sorted by colour:
+    //   'order[k]' is the index of the element that belongs at position k
+    private static int[] OrderByColour(int[] colours, int n) {
+        int[] next = ColourOffsets(colours, n);
+        int[] order = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[next[colours[i]]++] = i;
+        }
+        return order;
+    }
+
+    private static int[] Permute(int[] array, int[] order) {
+        int[] permuted = new int[array.length];
+        for (int k = 0; k < order.length; k++) {
+            permuted[k] = array[order[k]];
+        }
+        return permuted;
+    }
+
+    private static float[] Permute(float[] array, int[] order) {
+        float[] permuted = new float[array.length];
+        for (int k = 0; k < order.length; k++) {
+            permuted[k] = array[order[k]];
+        }
+        return permuted;
+    }
+
+    // Accumulates into 'forces' the spring forces of springs 'start' to
+    //   'end - 1' given the node positions
+    public void ApplySpringForces(float[] nodes, float[] forces,
+            int start, int end) {
+        for (int s = start; s < end; s++) {
+            int nodeThisIndex = springsThis[s];
+            int nodeThatIndex = springsThat[s];
+            float x = nodes[nodeThisIndex] - nodes[nodeThatIndex];
+            float y = nodes[nodeThisIndex + 1] - nodes[nodeThatIndex + 1];
+            float z = nodes[nodeThisIndex + 2] - nodes[nodeThatIndex + 2];
+            float distance = (float) Math.sqrt(
+                    (double) x * x + (double) y * y + (double) z * z); // Euclidean distance
+            float forceMagnitude = springsConstant[s]
+                    * (distance - springsStableDistance[s]) / 0.2f;
+
+            float scale = -forceMagnitude / distance;
+
+            forces[nodeThisIndex] += x * scale;
+            forces[nodeThisIndex + 1] += y * scale;
+            forces[nodeThisIndex + 2] += z * scale;
+
+            forces[nodeThatIndex] -= x * scale;
+            forces[nodeThatIndex + 1] -= y * scale;
+            forces[nodeThatIndex + 2] -= z * scale;
+        }
+    }
+
+    // Accumulates into 'forces' the bending forces of triples 'start' to
+    //   'end - 1' given the node positions. The force pushes the two outer
+    //   nodes so as to straighten the angle at the middle node
+    public void ApplyBendingForces(float[] nodes, float[] forces,
+            int start, int end) {
+        for (int b = start; b < end; b++) {
+            int nodeThisIndex = bendingThis[b];
+            int nodeThatLeftIndex = bendingLeft[b];
+            int nodeThatRightIndex = bendingRight[b];
+
+            float displacementLeftX = nodes[nodeThatLeftIndex] - nodes[nodeThisIndex];
+            float displacementLeftY = nodes[nodeThatLeftIndex + 1] - nodes[nodeThisIndex + 1];
+            float displacementLeftZ = nodes[nodeThatLeftIndex + 2] - nodes[nodeThisIndex + 2];
+            float displacementLeftLength = Arit.GetLength(
+                    displacementLeftX, displacementLeftY, displacementLeftZ);
+
+            float displacementRightX = nodes[nodeThatRightIndex] - nodes[nodeThisIndex];
+            float displacementRightY = nodes[nodeThatRightIndex + 1] - nodes[nodeThisIndex + 1];
+            float displacementRightZ = nodes[nodeThatRightIndex + 2] - nodes[nodeThisIndex + 2];
+            float displacementRightLength = Arit.GetLength(
+                    displacementRightX, displacementRightY, displacementRightZ);
+
+            float angle = Arit.GetAngle(
+                    displacementLeftX, displacementLeftY, displacementLeftZ,
+                    displacementRightX, displacementRightY, displacementRightZ);
+            float bendingForceMagnitude = bendingConstant[b]
+                    * ((float) Math.PI - angle);
+
+            float averageDisplacementX
+                    = displacementLeftX / displacementLeftLength
+                    + displacementRightX / displacementRightLength;
+            float averageDisplacementY
+                    = displacementLeftY / displacementLeftLength
+                    + displacementRightY / displacementRightLength;
+            float averageDisplacementZ
+                    = displacementLeftZ / displacementLeftLength
+                    + displacementRightZ / displacementRightLength;
+
+            float actingBendingForceX
+                    = -averageDisplacementX * bendingForceMagnitude / 2f;
+            float actingBendingForceY
+                    = -averageDisplacementY * bendingForceMagnitude / 2f;
+            float actingBendingForceZ
+                    = -averageDisplacementZ * bendingForceMagnitude / 2f;
+
+            forces[nodeThatLeftIndex] += actingBendingForceX;
+            forces[nodeThatLeftIndex + 1] += actingBendingForceY;
+            forces[nodeThatLeftIndex + 2] += actingBendingForceZ;
+
+            forces[nodeThatRightIndex] += actingBendingForceX;
+            forces[nodeThatRightIndex + 1] += actingBendingForceY;
+            forces[nodeThatRightIndex + 2] += actingBendingForceZ;
+        }
+    }
+
+    public int GetNumberOfSprings() {
+        return nSprings;
+    }
+
+    public int GetNumberOfBending() {
+        return nBending;
+    }
+
+    public int GetNumberOfSpringColours() {
+        return springsColourOffsets.length - 1;
+    }
+
+    public int GetNumberOfBendingColours() {
+        return bendingColourOffsets.length - 1;
+    }
+
+    // Returns the index of the 'nodes' array of the x-zth node
+    private int GetNode(int x, int z) {
+        return 3 * (x * (nDepth + 1) + z);
+    }
+
+}
@@ -0,0 +1,368 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Explicit step over the cloth held as structure-of-arrays (separate x, y
+ * and z arrays). On the regular grid every spring family joins node i to
+ * node i + offset for a fixed offset, so each family is evaluated as plain
+ * loops over contiguous ranges with no index arrays: one loop computes the
+ * spring forces into temporaries and two more add them to either end. The
+ * bending triples are families in the same way, a middle node i with its
+ * sides at i - offset and i + offset. These loops (and the drag and
+ * integration loops) have the simple form the JIT compiles to SIMD
+ * instructions, and each is split into ranges across the worker pool; as
+ * every loop writes each index once, the results are the same for any
+ * number of threads. Springs and triples missing at the edges of the grid
+ * have a zero stiffness rather than a branch.
+ *
+ * Once loaded, the positions and velocities here are the cloth's: each
+ * step writes the new positions back to the interleaved nodes (which the
+ * collision code reads) within its integration loop, but the velocities
+ * stay here until stored. Pinned nodes are never moved
+ */
+public class StructureOfArraysKernel {
+
+    private static final int nodeGrain = 1024; // Fewest nodes per task
+
+    private int nNodes;
+    private float[] xs, ys, zs, // Positions
+            vxs, vys, vzs, // Velocities
+            fxs, fys, fzs, // Forces
+            txs, tys, tzs; // Force of each spring on its first node (or of
+            // each triple on its sides)
+    private float[] nodesDragCoefficient;
+    private float[] nodesFree; // 0 for pinned nodes, else 1
+
+    // Spring families: family f joins node i to node i + familyOffset[f] for
+    //   'familyStart[f] <= i < familyEnd[f]', with stiffness
+    //   'familyConstant[f][i]' (zero where there is no spring)
+    private int[] familyOffset, familyStart, familyEnd;
+    private float[][] familyConstant;
+    private float[] familyStableDistance;
+
+    // Bending families: triple i of family f has its middle at node i and its
+    //   sides at i - bendingOffset[f] and i + bendingOffset[f], for
+    //   'bendingOffset[f] <= i < nNodes - bendingOffset[f]', with stiffness
+    //   'bendingConstant[f][i]' (zero where there is no triple)
+    private int[] bendingOffset;
+    private float[][] bendingConstant;
+
+    // Parallelism: the family (or step) the bodies are working on
+    private WorkerPool workerPool;
+    private WorkerPool.RangeBody startForcesBody, springsBody, springsThisBody,
+            springsThatBody, bendingBody, bendingLeftBody, bendingRightBody,
+            integrateBody;
+    private int offset;
+    private float[] constant;
+    private float stableDistance, gravity, dt;
+    private float[] nodes; // Interleaved positions to write to
+
+    public StructureOfArraysKernel(int nWidth, int nDepth,
+            float internodeSpringConstant, float internodeStableDistance,
+            float shearSpringConstant, float shearStableDistance,
+            float bendingSpringConstant,
+            float[] nodesDragCoefficient, boolean[] nodesPinned) {
+        nNodes = (nWidth + 1) * (nDepth + 1);
+        this.nodesDragCoefficient = nodesDragCoefficient;
+
+        xs = new float[nNodes];
+        ys = new float[nNodes];
+        zs = new float[nNodes];
+        vxs = new float[nNodes];
+        vys = new float[nNodes];
+        vzs = new float[nNodes];
+        fxs = new float[nNodes];
+        fys = new float[nNodes];
+        fzs = new float[nNodes];
+        txs = new float[nNodes];
+        tys = new float[nNodes];
+        tzs = new float[nNodes];
+        nodesFree = new float[nNodes];
+        for (int i = 0; i < nNodes; i++) {
+            nodesFree[i] = nodesPinned[i] ? 0 : 1;
+        }
+
+        // Nodes are numbered x * (nDepth + 1) + z
+        int column = nDepth + 1;
+        familyOffset = new int[]{
+            column, // Right and left
+            1, // Up and down
+            column + 1, // Upper-Left to Bottom-Right
+            1 - column}; // Upper-Right to Bottom-Left
+        familyStableDistance = new float[]{
+            internodeStableDistance, internodeStableDistance,
+            shearStableDistance, shearStableDistance};
+        familyStart = new int[4];
+        familyEnd = new int[4];
+        familyConstant = new float[4][nNodes];
+        for (int f = 0; f < 4; f++) {
+            familyStart[f] = Math.max(0, -familyOffset[f]);
+            familyEnd[f] = Math.min(nNodes, nNodes - familyOffset[f]);
+        }
+        bendingOffset = new int[]{
+            column, // Across the mesh
+            1}; // Up and down the mesh
+        bendingConstant = new float[2][nNodes];
+
+        for (int x = 0; x < nWidth + 1; x++) {
+            for (int z = 0; z < nDepth + 1; z++) {
+                int node = x * column + z;
+                if (x < nWidth) {
+                    familyConstant[0][node] = internodeSpringConstant;
+                }
+                if (z < nDepth) {
+                    familyConstant[1][node] = internodeSpringConstant;
+                }
+                if (x < nWidth && z < nDepth) {
+                    familyConstant[2][node] = shearSpringConstant;
+                }
+                if (x > 0 && z < nDepth) {
+                    familyConstant[3][node] = shearSpringConstant;
+                }
+                if (x > 0 && x < nWidth) {
+                    bendingConstant[0][node] = bendingSpringConstant;
+                }
+                if (z > 0 && z < nDepth) {
+                    bendingConstant[1][node] = bendingSpringConstant;
+                }
+            }
+        }
+
+        workerPool = new WorkerPool(1);
+        InitialiseBodies();
+    }
+
+    private void InitialiseBodies() {
+        startForcesBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                StartForces(start, end);
+            }
+        };
+        springsBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                SpringForces(start, end);
+            }
+        };
+        springsThisBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                AddForces(start, end, 0, 1);
+            }
+        };
+        springsThatBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                AddForces(start, end, offset, -1);
+            }
+        };
+        bendingBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                BendingForces(start, end);
+            }
+        };
+        // Each side of the triples in its own pass, so that no two writes in
+        //   a pass are to the same node
+        bendingLeftBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                AddForces(start, end, -offset, 1);
+            }
+        };
+        bendingRightBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                AddForces(start, end, offset, 1);
+            }
+        };
+        integrateBody = new WorkerPool.RangeBody() {
+            @Override
+            public void Run(int start, int end) {
+                Integrate(start, end);
+            }
+        };
+    }
+
+    public void SetWorkerPool(WorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    // Takes the positions and velocities from interleaved arrays, making this
+    //   kernel's the cloth's state
+    public void Load(float[] nodes, float[] velocities) {
+        for (int i = 0; i < nNodes; i++) {
+            xs[i] = nodes[3 * i];
+            ys[i] = nodes[3 * i + 1];
+            zs[i] = nodes[3 * i + 2];
+            vxs[i] = velocities[3 * i];
+            vys[i] = velocities[3 * i + 1];
+            vzs[i] = velocities[3 * i + 2];
+        }
+    }
+
+    // Copies this kernel's velocities to an interleaved array (the positions
+    //   are already there after each step)
+    public void StoreVelocities(float[] velocities) {
+        for (int i = 0; i < nNodes; i++) {
+            velocities[3 * i] = vxs[i];
+            velocities[3 * i + 1] = vys[i];
+            velocities[3 * i + 2] = vzs[i];
+        }
+    }
+
+    // Moves a node, as 'ClothSolver.CreatePurturbation' does to its nodes.
+    //   Pinned nodes stay where they are
+    public void SetPosition(int node, float x, float y, float z) {
+        if (nodesFree[node] == 0) {
+            return;
+        }
+        xs[node] = x;
+        ys[node] = y;
+        zs[node] = z;
+    }
+
+    // Returns the greatest squared speed of the free nodes 'start' to
+    //   'end - 1' (NaN if any is NaN)
+    public float GetMaxSpeedSquared(int start, int end) {
+        float speed2 = 0;
+        for (int i = start; i < end; i++) {
+            if (nodesFree[i] != 0) {
+                // Math.max keeps a NaN
+                speed2 = Math.max(speed2,
+                        vxs[i] * vxs[i] + vys[i] * vys[i] + vzs[i] * vzs[i]);
+            }
+        }
+        return speed2;
+    }
+
+    // Advances the cloth by one symplectic Euler step of 'dt' under
+    //   'gravity', writing the new positions to the interleaved 'nodes' too
+    public void Step(float gravity, float dt, float[] nodes) {
+        this.gravity = gravity;
+        this.dt = dt;
+        this.nodes = nodes;
+
+        workerPool.ForEachChunk(0, nNodes, nodeGrain, startForcesBody);
+
+        for (int f = 0; f < 4; f++) {
+            offset = familyOffset[f];
+            constant = familyConstant[f];
+            stableDistance = familyStableDistance[f];
+            workerPool.ForEachChunk(familyStart[f], familyEnd[f], nodeGrain,
+                    springsBody);
+            workerPool.ForEachChunk(familyStart[f], familyEnd[f], nodeGrain,
+                    springsThisBody);
+            workerPool.ForEachChunk(familyStart[f], familyEnd[f], nodeGrain,
+                    springsThatBody);
+        }
+
+        for (int f = 0; f < 2; f++) {
+            offset = bendingOffset[f];
+            constant = bendingConstant[f];
+            workerPool.ForEachChunk(offset, nNodes - offset, nodeGrain,
+                    bendingBody);
+            workerPool.ForEachChunk(offset, nNodes - offset, nodeGrain,
+                    bendingLeftBody);
+            workerPool.ForEachChunk(offset, nNodes - offset, nodeGrain,
+                    bendingRightBody);
+        }
+
+        workerPool.ForEachChunk(0, nNodes, nodeGrain, integrateBody);
+        this.nodes = null;
+        constant = null;
+    }
+
+    // Starts the forces on nodes 'start' to 'end - 1' with gravity and drag
+    private void StartForces(int start, int end) {
+        for (int i = start; i < end; i++) {
+            float drag = nodesDragCoefficient[i];
+            fxs[i] = -drag * vxs[i];
+            fys[i] = gravity - drag * vys[i];
+            fzs[i] = -drag * vzs[i];
+        }
+    }
+
+    // Finds the forces of springs 'start' to 'end - 1' of the current family
+    private void SpringForces(int start, int end) {
+        for (int i = start; i < end; i++) {
+            float x = xs[i] - xs[i + offset];
+            float y = ys[i] - ys[i + offset];
+            float z = zs[i] - zs[i + offset];
+            float distance = (float) Math.sqrt(x * x + y * y + z * z);
+            // Same force as 'SpringTable.ApplySpringForces'; the floor on the
+            //   distance only matters for missing (zero stiffness) springs
+            float scale = -constant[i] * (distance - stableDistance)
+                    / (0.2f * Math.max(distance, Float.MIN_NORMAL));
+            txs[i] = x * scale;
+            tys[i] = y * scale;
+            tzs[i] = z * scale;
+        }
+    }
+
+    // Finds the force on either side of triples 'start' to 'end - 1' of the
+    //   current family, as 'SpringTable.ApplyBendingForces'
+    private void BendingForces(int start, int end) {
+        for (int i = start; i < end; i++) {
+            float leftX = xs[i - offset] - xs[i];
+            float leftY = ys[i - offset] - ys[i];
+            float leftZ = zs[i - offset] - zs[i];
+            float rightX = xs[i + offset] - xs[i];
+            float rightY = ys[i + offset] - ys[i];
+            float rightZ = zs[i + offset] - zs[i];
+            double left2 = leftX * leftX + leftY * leftY + leftZ * leftZ;
+            double right2 = rightX * rightX + rightY * rightY + rightZ * rightZ;
+            float angle = (float) Math.acos(
+                    (leftX * rightX + leftY * rightY + leftZ * rightZ)
+                    / Math.sqrt(left2 * right2));
+            if (angle != angle) {
+                // Straight line (NaN)
+                angle = (float) Math.PI;
+            }
+            float magnitude = constant[i] * ((float) Math.PI - angle) / 2f;
+            float inverseLeft = 1 / Math.max((float) Math.sqrt(left2), Float.MIN_NORMAL);
+            float inverseRight = 1 / Math.max((float) Math.sqrt(right2), Float.MIN_NORMAL);
+            txs[i] = -(leftX * inverseLeft + rightX * inverseRight) * magnitude;
+            tys[i] = -(leftY * inverseLeft + rightY * inverseRight) * magnitude;
+            tzs[i] = -(leftZ * inverseLeft + rightZ * inverseRight) * magnitude;
+        }
+    }
+
+    // Adds 'sign' times the temporaries of 'start' to 'end - 1' to the forces
+    //   on the nodes 'shift' further on
+    private void AddForces(int start, int end, int shift, float sign) {
+        for (int i = start; i < end; i++) {
+            fxs[i + shift] += sign * txs[i];
+            fys[i + shift] += sign * tys[i];
+            fzs[i + shift] += sign * tzs[i];
+        }
+    }
+
+    // Symplectic Euler for nodes 'start' to 'end - 1', as
+    //   'ClothSolver.UpdateVelocities' and 'UpdateNodes'
+    private void Integrate(int start, int end) {
+        for (int i = start; i < end; i++) {
+            vxs[i] += fxs[i] * dt;
+            vys[i] += fys[i] * dt;
+            vzs[i] += fzs[i] * dt;
+            float step = dt * nodesFree[i];
+            xs[i] += vxs[i] * step;
+            ys[i] += vys[i] * step;
+            zs[i] += vzs[i] * step;
+            nodes[3 * i] = xs[i];
+            nodes[3 * i + 1] = ys[i];
+            nodes[3 * i + 2] = zs[i];
+        }
+    }
+
+}
@@ -9,22 +9,28 @@ package cloth_v11;
  *
  * @author Jack Reardon
  * @created Jul 27, 2014
- * @edited Jul 27, 2014
+ * @edited Oct 17, 2026
  *
  * Detects collisions between this triangle and another
  */
 public class Triangle_Pair {
 
-    float[] A1, B1, C1; // Vertices ABC describing triangle 1
-    float[] A2, B2, C2; // Vertices ABC describing triangle 2
-    float[] normal1, normal2;
+    // Both triangles are read straight out of a 'nodes' array (xyz
+    //   interleaved) by the index of each vertex's x coordinate, and all
+    //   intermediate values are held in fields, so a single instance can test
+    //   any number of pairs without allocating
+    float[] nodes;
+    int A1, B1, C1; // Vertices ABC describing triangle 1
+    int A2, B2, C2; // Vertices ABC describing triangle 2
+    float normal1X, normal1Y, normal1Z;
+    float normal2X, normal2Y, normal2Z;
 
     float A1To2, B1To2, C1To2; // Distances between triangle 1 nodes and 2 plane
     float A2To1, B2To1, C2To1; // Distances between triangle 2 nodes and 1 plane
 
-    float[] intersectingLine; // The line common to both planes described by triangles 1 and 2
-    float[] loneVertex1, pairedVertexJ1, pairedVertexK1;
-    float[] loneVertex2, pairedVertexJ2, pairedVertexK2;
+    float lineX, lineY, lineZ; // The line common to both planes described by triangles 1 and 2
+    int loneVertex1, pairedVertexJ1, pairedVertexK1;
+    int loneVertex2, pairedVertexJ2, pairedVertexK2;
     float loneDistance1, pairedDistanceJ1, pairedDistanceK1;
     float loneDistance2, pairedDistanceJ2, pairedDistanceK2;
     float projLone1, projJ1, projK1;
@@ -35,13 +41,19 @@ public class Triangle_Pair {
     float boundM1, boundN1; // Bounds (M and N, in order) of triangle 1 on the intersecting line
     float boundM2, boundN2; // Bounds (M and N, in order) of triangle 2 on the intersecting line
 
-    public void SetTriangle1(float[] A, float[] B, float[] C) {
+    public void SetNodes(float[] nodes) {
+        this.nodes = nodes;
+    }
+
+    // Sets triangle 1 by the indices in 'nodes' of its vertices
+    public void SetTriangle1(int A, int B, int C) {
         A1 = A;
         B1 = B;
         C1 = C;
     }
 
-    public void SetTriangle2(float[] A, float[] B, float[] C) {
+    // Sets triangle 2 by the indices in 'nodes' of its vertices
+    public void SetTriangle2(int A, int B, int C) {
         A2 = A;
         B2 = B;
         C2 = C;
@@ -61,7 +73,9 @@ public class Triangle_Pair {
                 != Math.signum(C1To2)) {
 
             // Calculate the line intersecting both triangles
-            intersectingLine = CrossProduct(normal1, normal2);
+            lineX = normal1Y * normal2Z - normal1Z * normal2Y;
+            lineY = normal1Z * normal2X - normal1X * normal2Z;
+            lineZ = normal1X * normal2Y - normal1Y * normal2X;
 
             // Determine the isolated vertex (it will be on one side of the
             //   other plane opposite to the other two vertices)
@@ -87,26 +101,52 @@ public class Triangle_Pair {
         }
     }
 
+    // The normals are (B - A) x (C - A)
     private void DetermineNormals() {
-        normal1 = GetNormalToTriangle(A1, B1, C1);
-        normal2 = GetNormalToTriangle(A2, B2, C2);
+        float abX = nodes[B1] - nodes[A1];
+        float abY = nodes[B1 + 1] - nodes[A1 + 1];
+        float abZ = nodes[B1 + 2] - nodes[A1 + 2];
+        float acX = nodes[C1] - nodes[A1];
+        float acY = nodes[C1 + 1] - nodes[A1 + 1];
+        float acZ = nodes[C1 + 2] - nodes[A1 + 2];
+        normal1X = abY * acZ - abZ * acY;
+        normal1Y = abZ * acX - abX * acZ;
+        normal1Z = abX * acY - abY * acX;
+
+        abX = nodes[B2] - nodes[A2];
+        abY = nodes[B2 + 1] - nodes[A2 + 1];
+        abZ = nodes[B2 + 2] - nodes[A2 + 2];
+        acX = nodes[C2] - nodes[A2];
+        acY = nodes[C2 + 1] - nodes[A2 + 1];
+        acZ = nodes[C2 + 2] - nodes[A2 + 2];
+        normal2X = abY * acZ - abZ * acY;
+        normal2Y = abZ * acX - abX * acZ;
+        normal2Z = abX * acY - abY * acX;
     }
 
     // Determines the distances between triangle 1 nodes and triangle 2 plane
     private void DetermineDistances() {
-        A1To2 = DotProduct(normal2, A1)
-                - DotProduct(normal2, A2);
-        B1To2 = DotProduct(normal2, B1)
-                - DotProduct(normal2, A2);
-        C1To2 = DotProduct(normal2, C1)
-                - DotProduct(normal2, A2);
+        float offset2 = Dot2(A2);
+        A1To2 = Dot2(A1) - offset2;
+        B1To2 = Dot2(B1) - offset2;
+        C1To2 = Dot2(C1) - offset2;
         
-        A2To1 = DotProduct(normal1, A2)
-                - DotProduct(normal1, A1);
-        B2To1 = DotProduct(normal1, B2)
-                - DotProduct(normal1, A1);
-        C2To1 = DotProduct(normal1, C2)
-                - DotProduct(normal1, A1);
+        float offset1 = Dot1(A1);
+        A2To1 = Dot1(A2) - offset1;
+        B2To1 = Dot1(B2) - offset1;
+        C2To1 = Dot1(C2) - offset1;
+    }
+
+    // Returns the dot product of normal 1 and the vertex at 'nodes[vertex]'
+    private float Dot1(int vertex) {
+        return normal1X * nodes[vertex] + normal1Y * nodes[vertex + 1]
+                + normal1Z * nodes[vertex + 2];
+    }
+
+    // Returns the dot product of normal 2 and the vertex at 'nodes[vertex]'
+    private float Dot2(int vertex) {
+        return normal2X * nodes[vertex] + normal2Y * nodes[vertex + 1]
+                + normal2Z * nodes[vertex + 2];
     }
 
     private boolean DetectCollision() {
@@ -137,10 +177,6 @@ public class Triangle_Pair {
     // Determine the isolated vertex (it will be on one side of the
     //   other plane opposite to the other two vertices) for triangle 1
     private void DetermineLoneVertexTriangle1() {
-        loneVertex1 = null;
-        pairedVertexJ1 = null;
-        pairedVertexK1 = null;
-
         if (Math.signum(A1To2)
                 != Math.signum(B1To2)) {
             if (Math.signum(A1To2)
@@ -173,12 +209,8 @@ public class Triangle_Pair {
     }
     
     // Determine the isolated vertex (it will be on one side of the
-    //   other plane opposite to the other two vertices) for triangle 1
+    //   other plane opposite to the other two vertices) for triangle 2
     private void DetermineLoneVertexTriangle2() {
-        loneVertex2 = null;
-        pairedVertexJ2 = null;
-        pairedVertexK2 = null;
-
         if (Math.signum(A2To1)
                 != Math.signum(B2To1)) {
             if (Math.signum(A2To1)
@@ -210,9 +242,11 @@ public class Triangle_Pair {
         }
     }
 
+    // The axis along which the intersecting line is longest (in magnitude)
     private void DetermineMajorAxis() {
-        if (intersectingLine[0] > intersectingLine[1]) {
-            if (intersectingLine[0] > intersectingLine[2]) {
+        float x = Math.abs(lineX), y = Math.abs(lineY), z = Math.abs(lineZ);
+        if (x > y) {
+            if (x > z) {
                 // 'intersectingLine' is most closely aligned with the x
                 //   axis
                 majorAxis = 0;
@@ -222,7 +256,7 @@ public class Triangle_Pair {
                 majorAxis = 2;
             }
         } else {
-            if (intersectingLine[1] > intersectingLine[2]) {
+            if (y > z) {
                 // 'intersectingLine' is most closely aligned with the y
                 //   axis
                 majorAxis = 1;
@@ -235,13 +269,13 @@ public class Triangle_Pair {
     }
 
     private void DetermineProjectionValues() {
-        projLone1 = loneVertex1[majorAxis];
-        projJ1 = pairedVertexJ1[majorAxis];
-        projK1 = pairedVertexK1[majorAxis];
+        projLone1 = nodes[loneVertex1 + majorAxis];
+        projJ1 = nodes[pairedVertexJ1 + majorAxis];
+        projK1 = nodes[pairedVertexK1 + majorAxis];
         
-        projLone2 = loneVertex2[majorAxis];
-        projJ2 = pairedVertexJ2[majorAxis];
-        projK2 = pairedVertexK2[majorAxis];
+        projLone2 = nodes[loneVertex2 + majorAxis];
+        projJ2 = nodes[pairedVertexJ2 + majorAxis];
+        projK2 = nodes[pairedVertexK2 + majorAxis];
     }
 
     private void DetermineIntersectingBounds() {
@@ -270,37 +304,4 @@ public class Triangle_Pair {
         }
     }
 
-    // Returns an array (3 floats) which is normal to the plane described by
-    //   the three coordinates (A, B and C) describing a triagle (describing
-    //   a plane). The normal is (B - A) x (C - A)
-    private float[] GetNormalToTriangle(float[] A, float[] B, float[] C) {
-        float[] normal = new float[3];
-        // Determine the cross product
-        normal[0] = (B[1] - A[1]) * (C[2] - A[2])
-                - (B[2] - A[2]) * (C[1] - A[1]);
-        normal[1] = (B[0] - A[0]) * (C[2] - A[2])
-                - (B[2] - A[2]) * (C[0] - A[0]);
-        normal[2] = (B[0] - A[0]) * (C[1] - A[1])
-                - (B[1] - A[1]) * (C[0] - A[0]);
-
-        return normal;
-    }
-
-    // Returns A x B
-    private float[] CrossProduct(float[] A, float[] B) {
-        float[] cross = new float[3];
-        // Determine the cross product
-        cross[0] = A[1] * B[2] - A[2] * B[1];
-        cross[1] = A[0] * B[2] - A[2] * B[0];
-        cross[2] = A[0] * B[1] - A[1] * B[0];
-
-        return cross;
-    }
-
-    // Returns the dot product between the two given 'vectors' (arrays of
-    //   length 3)
-    private float DotProduct(float[] A, float[] B) {
-        return A[0] * B[0] + A[1] * B[1] + A[2] * B[2];
-    }
-
 }
@@ -0,0 +1,89 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * A fixed number of threads over which ranges of independent work (springs,
+ * nodes, triangles) are split. With one thread everything runs inline on the
+ * calling thread
+ */
+public class WorkerPool {
+
+    // A piece of work over the indices 'start' to 'end - 1'
+    public interface RangeBody {
+
+        void Run(int start, int end);
+    }
+
+    private int nThreads;
+    private ForkJoinPool pool; // null when running on the calling thread
+
+    public WorkerPool(int nThreads) {
+        this.nThreads = Math.max(nThreads, 1);
+        if (this.nThreads > 1) {
+            pool = new ForkJoinPool(this.nThreads);
+        }
+    }
+
+    public int GetThreadCount() {
+        return nThreads;
+    }
+
+    // Runs 'body' over 'start' to 'end - 1', split into chunks of at least
+    //   'grain' indices which may run concurrently. Returns once all chunks
+    //   are done
+    public void ForEachChunk(int start, int end, int grain, RangeBody body) {
+        if (pool == null || end - start <= grain) {
+            body.Run(start, end);
+            return;
+        }
+
+        // Aim for a few chunks per thread so work stealing can balance them
+        int chunk = Math.max(grain, (end - start) / (4 * nThreads) + 1);
+        pool.invoke(new RangeTask(body, start, end, chunk));
+    }
+
+    public void Shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    private static class RangeTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RangeBody body;
+        private final int start, end, chunk;
+
+        RangeTask(RangeBody body, int start, int end, int chunk) {
+            this.body = body;
+            this.start = start;
+            this.end = end;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= chunk) {
+                body.Run(start, end);
+            } else {
+                int middle = (start + end) >>> 1;
+                invokeAll(new RangeTask(body, start, middle, chunk),
+                        new RangeTask(body, middle, end, chunk));
+            }
+        }
+    }
+
+}
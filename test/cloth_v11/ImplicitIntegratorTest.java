@@ -0,0 +1,54 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Checks that the implicit integrator's conjugate gradients converge: over
+ * three simulated seconds of the default cloth at several time steps, every
+ * solve must stop before the iteration cap with a solution satisfying
+ * (M - dt dF/dv - dt^2 dF/dx) dv = b to within the tolerance (less a
+ * little slack: the solver stops on the residual it updates in floats,
+ * which drifts slightly from the true one). Run as a program; throws on the
+ * first solve which does not
+ */
+public class ImplicitIntegratorTest {
+
+    private static final double slack = 1.05;
+
+    public static void main(String[] args) {
+        for (float dt : new float[]{0.05f, 0.2f, 0.5f}) {
+            Check(dt, 3);
+        }
+        System.out.println("ImplicitIntegratorTest passed");
+    }
+
+    private static void Check(float dt, float seconds) {
+        ClothSolver solver = new ClothSolver();
+        solver.SetIntegrator(ClothSolver.Integrator.IMPLICIT);
+        solver.SetTimeStep(dt);
+        ImplicitIntegrator integrator = solver.GetImplicitIntegrator();
+
+        int steps = Math.round(seconds / dt);
+        for (int step = 0; step < steps; step++) {
+            solver.Step(1);
+            int iterations = integrator.GetLastIterations();
+            double residual = integrator.GetRelativeResidual();
+            if (iterations >= integrator.GetMaxIterations()
+                    || !(residual <= slack * integrator.GetTolerance())) {
+                throw new AssertionError("Step " + step + " at dt " + dt
+                        + ": " + iterations + " iterations, relative residual "
+                        + residual);
+            }
+        }
+        solver.GetWorkerPool().Shutdown();
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.Arrays;
+import java.util.TreeSet;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Checks that with collision response on, every feature pair within the
+ * contact thickness becomes a contact whichever broad phase is used: the
+ * cloth is folded in half with the layers a twentieth of the rest length
+ * apart (so the boxes of facing triangles do not overlap), stepped once with
+ * no contact iterations, and the contacts found compared with those from
+ * every pair of triangles. Run as a program; throws if any contact is
+ * missing
+ */
+public class ProximityContactTest {
+
+    public static void main(String[] args) {
+        Check(ClothSolver.BroadPhase.SWEEP_AND_PRUNE, false);
+        Check(ClothSolver.BroadPhase.SWEEP_AND_PRUNE, true);
+        Check(ClothSolver.BroadPhase.SPATIAL_HASH, false);
+        Check(ClothSolver.BroadPhase.BOUNDING_VOLUME_HIERARCHY, false);
+        System.out.println("ProximityContactTest passed");
+    }
+
+    private static void Check(ClothSolver.BroadPhase broadPhase, boolean cache) {
+        ClothSolver solver = new ClothSolver();
+        solver.SetBroadPhase(broadPhase);
+        solver.SetPairCache(cache);
+        solver.SetCollisionResponse(true);
+        solver.GetContactSolver().SetIterations(0);
+        Fold(solver);
+        // Too short a step for anything to move far
+        solver.SetTimeStep(1e-5f);
+        solver.Step(1);
+
+        TreeSet<String> found = Contacts(solver.GetContactBuffer());
+        TreeSet<String> expected = AllPairsContacts(solver);
+        if (expected.size() < 1000) {
+            throw new AssertionError("Only " + expected.size()
+                    + " contacts in the reference; the cloth is not folded");
+        }
+        if (!found.equals(expected)) {
+            throw new AssertionError(broadPhase + (cache ? ", cached" : "")
+                    + ": found " + found.size() + " contacts, expected "
+                    + expected.size());
+        }
+        solver.GetWorkerPool().Shutdown();
+    }
+
+    // Folds the cloth along its middle column, the far half lying flat over
+    //   the near half a twentieth of the rest length above it
+    private static void Fold(ClothSolver solver) {
+        float[] nodes = solver.GetNodes();
+        int nWidth = solver.GetWidth(), nDepth = solver.GetDepth();
+        int fold = nWidth / 2;
+        float x0 = nodes[0], y0 = nodes[1];
+        float rest = nodes[3 * (nDepth + 1)] - x0;
+        for (int x = fold + 1; x < nWidth + 1; x++) {
+            for (int z = 0; z < nDepth + 1; z++) {
+                int i = 3 * (x * (nDepth + 1) + z);
+                nodes[i] = x0 + (2 * fold - x) * rest;
+                nodes[i + 1] = y0 + 0.05f * rest;
+            }
+        }
+    }
+
+    // The contacts from every pair of triangles which share no vertex
+    private static TreeSet<String> AllPairsContacts(ClothSolver solver) {
+        int[] vertices = solver.GetTrianglesVertices();
+        int nTriangles = solver.GetNumberOfTriangles();
+        PairBuffer pairs = new PairBuffer();
+        for (int a = 0; a < nTriangles; a++) {
+            for (int b = a + 1; b < nTriangles; b++) {
+                if (!ShareVertex(vertices, a, b)) {
+                    pairs.Add(a, b);
+                }
+            }
+        }
+        ContactBuffer contacts = new ContactBuffer();
+        ContinuousCollisionDetection detection = new ContinuousCollisionDetection(
+                vertices, solver.GetContactSolver().GetThickness());
+        detection.SetContactBuffer(contacts);
+        detection.FindProximities(pairs, solver.GetNodes());
+        return Contacts(contacts);
+    }
+
+    // Each contact as its four nodes, sorted: the order within a contact
+    //   depends on which triangle of its pair came first, which differs
+    //   between the broad phases
+    private static TreeSet<String> Contacts(ContactBuffer contacts) {
+        TreeSet<String> set = new TreeSet<String>();
+        int[] contactNodes = new int[4];
+        for (int c = 0; c < contacts.Size(); c++) {
+            System.arraycopy(contacts.contactsNodes, 4 * c, contactNodes, 0, 4);
+            Arrays.sort(contactNodes);
+            set.add(Arrays.toString(contactNodes));
+        }
+        return set;
+    }
+
+    private static boolean ShareVertex(int[] vertices, int a, int b) {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                if (vertices[3 * a + i] == vertices[3 * b + j]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * To change this license header, choose License Headers in Project Properties.
+ * To change this template file, choose Tools | Templates
+ * and open the template in the editor.
+ */
+package cloth_v11;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ *
+ * @author Jack Reardon
+ * @created Oct 17, 2026
+ * @edited Oct 17, 2026
+ *
+ * Checks that sweep and prune finds exactly the pairs of triangles whose
+ * boxes overlap (and which share no vertex), against a brute force over all
+ * pairs, on a crumpled cloth over a run of steps and for several thread
+ * counts, with and without the pair cache. Boxes which only touch count as
+ * overlapping. Run as a program; throws on the first step whose pairs
+ * differ
+ */
+public class SweepAndPruneTest {
+
+    public static void main(String[] args) {
+        for (int threads : new int[]{1, 4}) {
+            for (boolean cache : new boolean[]{false, true}) {
+                Check(threads, cache, 200);
+            }
+        }
+        System.out.println("SweepAndPruneTest passed");
+    }
+
+    private static void Check(int threads, boolean cache, int steps) {
+        ClothSolver solver = new ClothSolver();
+        solver.SetThreadCount(threads);
+        solver.SetPairCache(cache);
+        Crumple(solver, new Random(1));
+
+        for (int step = 0; step < steps; step++) {
+            solver.Step(1);
+            TreeSet<Long> found = Pairs(solver.GetCandidatePairs());
+            TreeSet<Long> expected = BruteForce(solver);
+            if (!found.equals(expected)) {
+                throw new AssertionError("Step " + step + " with " + threads
+                        + " threads" + (cache ? ", cached" : "") + ": found "
+                        + found.size() + " pairs, expected " + expected.size());
+            }
+        }
+        solver.GetWorkerPool().Shutdown();
+    }
+
+    // Displaces every free node up or down at random
+    private static void Crumple(ClothSolver solver, Random random) {
+        for (int x = 1; x < solver.GetWidth(); x++) {
+            for (int z = 1; z < solver.GetDepth(); z++) {
+                solver.CreatePurturbation(x, z,
+                        0, (random.nextFloat() - 0.5f) * 0.3f, 0);
+            }
+        }
+    }
+
+    private static TreeSet<Long> Pairs(PairBuffer pairs) {
+        TreeSet<Long> set = new TreeSet<Long>();
+        for (int p = 0; p < pairs.Size(); p++) {
+            set.add(Key(pairs.GetFirst(p), pairs.GetSecond(p)));
+        }
+        return set;
+    }
+
+    // Every pair of triangles sharing no vertex whose boxes overlap or touch
+    private static TreeSet<Long> BruteForce(ClothSolver solver) {
+        float[] nodes = solver.GetNodes();
+        int[] vertices = solver.GetTrianglesVertices();
+        int nTriangles = solver.GetNumberOfTriangles();
+        float[] min = new float[3 * nTriangles], max = new float[3 * nTriangles];
+        for (int t = 0; t < nTriangles; t++) {
+            for (int axis = 0; axis < 3; axis++) {
+                min[3 * t + axis] = Float.POSITIVE_INFINITY;
+                max[3 * t + axis] = Float.NEGATIVE_INFINITY;
+                for (int v = 0; v < 3; v++) {
+                    float value = nodes[vertices[3 * t + v] + axis];
+                    min[3 * t + axis] = Math.min(min[3 * t + axis], value);
+                    max[3 * t + axis] = Math.max(max[3 * t + axis], value);
+                }
+            }
+        }
+
+        TreeSet<Long> set = new TreeSet<Long>();
+        for (int a = 0; a < nTriangles; a++) {
+            for (int b = a + 1; b < nTriangles; b++) {
+                boolean overlap = true;
+                for (int axis = 0; axis < 3 && overlap; axis++) {
+                    overlap = min[3 * a + axis] <= max[3 * b + axis]
+                            && min[3 * b + axis] <= max[3 * a + axis];
+                }
+                if (overlap && !ShareVertex(vertices, a, b)) {
+                    set.add(Key(a, b));
+                }
+            }
+        }
+        return set;
+    }
+
+    private static boolean ShareVertex(int[] vertices, int a, int b) {
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                if (vertices[3 * a + i] == vertices[3 * b + j]) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static long Key(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+}